@@ -3,12 +3,28 @@ package pl.coderstrust.configuration;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.stereotype.Component;
+import pl.coderstrust.database.file.FsyncPolicy;
+import pl.coderstrust.database.file.LogFormat;
 
 @Component
 @ConfigurationProperties(prefix = "pl.coderstrust.database.in-file")
 @PropertySource("classpath:in-file.properties")
 public class InFileDatabaseProperties {
     private String filePath;
+    private String logDirectory;
+    private long segmentSize = 8388608;
+    private boolean compactionEnabled = true;
+    private long compactionInterval = 60000;
+    private double compactionDeadRecordRatio = 0.5;
+    private long compactionMinSize = 1048576;
+    private FsyncPolicy fsyncPolicy = FsyncPolicy.BATCH;
+    private long fsyncInterval = 10;
+    private int maxBatchSize = 512;
+    private long operationTimeout = 30000;
+    private LogFormat logFormat = LogFormat.JSON;
+    private boolean importLegacyFile = false;
+    private boolean checkpointEnabled = true;
+    private long checkpointInterval = 60000;
 
     public String getFilePath() {
         return filePath;
@@ -17,4 +33,116 @@ public class InFileDatabaseProperties {
     public void setFilePath(String filePath) {
         this.filePath = filePath;
     }
+
+    public String getLogDirectory() {
+        return logDirectory;
+    }
+
+    public void setLogDirectory(String logDirectory) {
+        this.logDirectory = logDirectory;
+    }
+
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    public void setSegmentSize(long segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    public boolean isCompactionEnabled() {
+        return compactionEnabled;
+    }
+
+    public void setCompactionEnabled(boolean compactionEnabled) {
+        this.compactionEnabled = compactionEnabled;
+    }
+
+    public long getCompactionInterval() {
+        return compactionInterval;
+    }
+
+    public void setCompactionInterval(long compactionInterval) {
+        this.compactionInterval = compactionInterval;
+    }
+
+    public double getCompactionDeadRecordRatio() {
+        return compactionDeadRecordRatio;
+    }
+
+    public void setCompactionDeadRecordRatio(double compactionDeadRecordRatio) {
+        this.compactionDeadRecordRatio = compactionDeadRecordRatio;
+    }
+
+    public long getCompactionMinSize() {
+        return compactionMinSize;
+    }
+
+    public void setCompactionMinSize(long compactionMinSize) {
+        this.compactionMinSize = compactionMinSize;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    public void setFsyncPolicy(FsyncPolicy fsyncPolicy) {
+        this.fsyncPolicy = fsyncPolicy;
+    }
+
+    public long getFsyncInterval() {
+        return fsyncInterval;
+    }
+
+    public void setFsyncInterval(long fsyncInterval) {
+        this.fsyncInterval = fsyncInterval;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public long getOperationTimeout() {
+        return operationTimeout;
+    }
+
+    public void setOperationTimeout(long operationTimeout) {
+        this.operationTimeout = operationTimeout;
+    }
+
+    public LogFormat getLogFormat() {
+        return logFormat;
+    }
+
+    public void setLogFormat(LogFormat logFormat) {
+        this.logFormat = logFormat;
+    }
+
+    public boolean isImportLegacyFile() {
+        return importLegacyFile;
+    }
+
+    public void setImportLegacyFile(boolean importLegacyFile) {
+        this.importLegacyFile = importLegacyFile;
+    }
+
+    public boolean isCheckpointEnabled() {
+        return checkpointEnabled;
+    }
+
+    public void setCheckpointEnabled(boolean checkpointEnabled) {
+        this.checkpointEnabled = checkpointEnabled;
+    }
+
+    public long getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public void setCheckpointInterval(long checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
 }
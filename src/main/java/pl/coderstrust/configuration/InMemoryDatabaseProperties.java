@@ -0,0 +1,101 @@
+package pl.coderstrust.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "pl.coderstrust.database.in-memory")
+@PropertySource("classpath:in-memory.properties")
+public class InMemoryDatabaseProperties {
+    private boolean uniqueNumbers = false;
+    private boolean offHeap = false;
+    private int slabSize = 16777216;
+    private boolean deduplicate = true;
+    private boolean persistenceEnabled = false;
+    private String persistenceDirectory = "invoice_database_memory";
+    private long snapshotInterval = 60000;
+    private int snapshotParts = 4;
+    private boolean syncWrites = false;
+    private boolean columnarReports = false;
+
+    public boolean isUniqueNumbers() {
+        return uniqueNumbers;
+    }
+
+    public void setUniqueNumbers(boolean uniqueNumbers) {
+        this.uniqueNumbers = uniqueNumbers;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public void setOffHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    public int getSlabSize() {
+        return slabSize;
+    }
+
+    public void setSlabSize(int slabSize) {
+        this.slabSize = slabSize;
+    }
+
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    public void setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
+
+    public boolean isPersistenceEnabled() {
+        return persistenceEnabled;
+    }
+
+    public void setPersistenceEnabled(boolean persistenceEnabled) {
+        this.persistenceEnabled = persistenceEnabled;
+    }
+
+    public String getPersistenceDirectory() {
+        return persistenceDirectory;
+    }
+
+    public void setPersistenceDirectory(String persistenceDirectory) {
+        this.persistenceDirectory = persistenceDirectory;
+    }
+
+    public long getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    public void setSnapshotInterval(long snapshotInterval) {
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    public int getSnapshotParts() {
+        return snapshotParts;
+    }
+
+    public void setSnapshotParts(int snapshotParts) {
+        this.snapshotParts = snapshotParts;
+    }
+
+    public boolean isSyncWrites() {
+        return syncWrites;
+    }
+
+    public void setSyncWrites(boolean syncWrites) {
+        this.syncWrites = syncWrites;
+    }
+
+    public boolean isColumnarReports() {
+        return columnarReports;
+    }
+
+    public void setColumnarReports(boolean columnarReports) {
+        this.columnarReports = columnarReports;
+    }
+}
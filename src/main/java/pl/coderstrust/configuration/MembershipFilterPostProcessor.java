@@ -0,0 +1,26 @@
+package pl.coderstrust.configuration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+import pl.coderstrust.database.Database;
+import pl.coderstrust.database.FilteredDatabase;
+
+@Component
+public class MembershipFilterPostProcessor implements BeanPostProcessor {
+
+    private final MembershipFilterProperties membershipFilterProperties;
+
+    @Autowired
+    public MembershipFilterPostProcessor(MembershipFilterProperties membershipFilterProperties) {
+        this.membershipFilterProperties = membershipFilterProperties;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (membershipFilterProperties.isEnabled() && bean instanceof Database && !(bean instanceof FilteredDatabase)) {
+            return new FilteredDatabase((Database) bean, membershipFilterProperties);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,38 @@
+package pl.coderstrust.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "pl.coderstrust.database.membership-filter")
+@PropertySource("classpath:membership-filter.properties")
+public class MembershipFilterProperties {
+    private boolean enabled = false;
+    private long expectedInvoices = 1000000;
+    private double falsePositiveRate = 0.01;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getExpectedInvoices() {
+        return expectedInvoices;
+    }
+
+    public void setExpectedInvoices(long expectedInvoices) {
+        this.expectedInvoices = expectedInvoices;
+    }
+
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    public void setFalsePositiveRate(double falsePositiveRate) {
+        this.falsePositiveRate = falsePositiveRate;
+    }
+}
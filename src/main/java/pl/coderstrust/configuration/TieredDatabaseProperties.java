@@ -0,0 +1,38 @@
+package pl.coderstrust.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "pl.coderstrust.database.tiered")
+@PropertySource("classpath:tiered.properties")
+public class TieredDatabaseProperties {
+    private long memoryBudget = 67108864;
+    private int hotIssuedDays = 30;
+    private long statsLogInterval = 60000;
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    public int getHotIssuedDays() {
+        return hotIssuedDays;
+    }
+
+    public void setHotIssuedDays(int hotIssuedDays) {
+        this.hotIssuedDays = hotIssuedDays;
+    }
+
+    public long getStatsLogInterval() {
+        return statsLogInterval;
+    }
+
+    public void setStatsLogInterval(long statsLogInterval) {
+        this.statsLogInterval = statsLogInterval;
+    }
+}
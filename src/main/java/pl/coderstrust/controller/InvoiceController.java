@@ -6,10 +6,14 @@ import io.swagger.annotations.ApiImplicitParams;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -24,7 +28,13 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import pl.coderstrust.model.BulkOperationResult;
 import pl.coderstrust.model.Invoice;
+import pl.coderstrust.model.InvoicePage;
+import pl.coderstrust.model.InvoiceQuery;
+import pl.coderstrust.model.InvoiceSummary;
+import pl.coderstrust.model.InvoiceTotals;
+import pl.coderstrust.model.ReportGrouping;
 import pl.coderstrust.service.InvoiceEmailService;
 import pl.coderstrust.service.InvoicePdfService;
 import pl.coderstrust.service.InvoiceService;
@@ -35,6 +45,8 @@ import pl.coderstrust.service.ServiceOperationException;
 @Api(value = "/invoices")
 public class InvoiceController {
 
+    private static final int MAX_PAGE_LIMIT = 1000;
+
     private Logger log = LoggerFactory.getLogger(InvoiceController.class);
 
     private InvoiceService invoiceService;
@@ -80,6 +92,28 @@ public class InvoiceController {
         }
     }
 
+    @ApiOperation(value = "Add new invoices in bulk", notes = "Add list of invoices to database in one batch, reporting the outcome of each of them", response = BulkOperationResult[].class)
+    @ApiResponses({
+        @ApiResponse(code = 200, message = "OK", response = BulkOperationResult[].class),
+        @ApiResponse(code = 400, message = "Bad request"),
+        @ApiResponse(code = 406, message = "Not acceptable format"),
+        @ApiResponse(code = 500, message = "Internal server error")
+    })
+    @ApiImplicitParam(required = true, name = "invoices", value = "List of invoices to add", dataType = "Invoice", allowMultiple = true)
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> addAll(@RequestBody(required = false) List<Invoice> invoices) {
+        if (invoices == null) {
+            log.error("Attempt to add null list of invoices.");
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        try {
+            return new ResponseEntity<>(invoiceService.addAll(invoices), HttpStatus.OK);
+        } catch (Exception e) {
+            log.error("An error occured during adding invoices in bulk.");
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     @ApiOperation(value = "Update invoice", notes = "Update invoice with provided id", response = Invoice.class)
     @ApiResponses({
         @ApiResponse(code = 200, message = "Updated", response = Invoice.class),
@@ -130,6 +164,48 @@ public class InvoiceController {
         }
     }
 
+    @ApiOperation(value = "Get invoice summaries", notes = "Retrieving headers and totals of all invoices ordered by id, without their entries", response = InvoiceSummary[].class)
+    @ApiResponses({
+        @ApiResponse(code = 200, message = "OK", response = InvoiceSummary[].class),
+        @ApiResponse(code = 500, message = "Internal server error")
+    })
+    @GetMapping(value = "/summaries", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getSummaries() {
+        try {
+            return new ResponseEntity<>(invoiceService.getSummaries(), HttpStatus.OK);
+        } catch (Exception e) {
+            log.error("An error occured during getting invoice summaries.");
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @ApiOperation(value = "Get page of invoices", notes = "Retrieving invoices ordered by id, one page at a time", response = InvoicePage.class)
+    @ApiResponses({
+        @ApiResponse(code = 200, message = "OK", response = InvoicePage.class),
+        @ApiResponse(code = 400, message = "Bad request"),
+        @ApiResponse(code = 500, message = "Internal server error")
+    })
+    @ApiImplicitParams({
+        @ApiImplicitParam(name = "cursor", value = "Cursor returned with the previous page, absent for the first page", dataType = "String"),
+        @ApiImplicitParam(name = "limit", value = "Maximum number of invoices on the page", dataType = "int", defaultValue = "50")
+    })
+    @GetMapping(value = "/page", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getPage(@RequestParam(required = false) String cursor, @RequestParam(defaultValue = "50") int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_LIMIT) {
+            log.error("Attempt to get page of invoices with limit out of range.");
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        try {
+            return new ResponseEntity<>(invoiceService.getPage(cursor, limit), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            log.error("Attempt to get page of invoices with invalid cursor.");
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            log.error("An error occured during getting page of invoices.");
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     @ApiOperation(value = "Find by Id", notes = "Finds Invoice by given Id", response = Invoice.class)
     @ApiResponses({
         @ApiResponse(code = 200, message = "OK", response = Invoice.class),
@@ -224,6 +300,125 @@ public class InvoiceController {
         }
     }
 
+    @ApiOperation(value = "Find by issued date", notes = "Finds invoices issued between given dates inclusively", response = Invoice[].class)
+    @ApiResponses({
+        @ApiResponse(code = 200, message = "OK", response = Invoice[].class),
+        @ApiResponse(code = 400, message = "Bad request"),
+        @ApiResponse(code = 500, message = "Internal server error")
+    })
+    @ApiImplicitParams({
+        @ApiImplicitParam(required = true, name = "from", value = "First issued date of the range", dataType = "LocalDate"),
+        @ApiImplicitParam(required = true, name = "to", value = "Last issued date of the range", dataType = "LocalDate")
+    })
+    @GetMapping(value = "/byIssuedDate", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getByIssuedDateRange(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (from == null || to == null) {
+            log.error("Attempt to get invoices with null issued date range.");
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        try {
+            return new ResponseEntity<>(invoiceService.getByIssuedDateRange(from, to), HttpStatus.OK);
+        } catch (Exception e) {
+            log.error("An error occured during getting invoices by issued date range.");
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @ApiOperation(value = "Find by due date", notes = "Finds invoices due between given dates inclusively", response = Invoice[].class)
+    @ApiResponses({
+        @ApiResponse(code = 200, message = "OK", response = Invoice[].class),
+        @ApiResponse(code = 400, message = "Bad request"),
+        @ApiResponse(code = 500, message = "Internal server error")
+    })
+    @ApiImplicitParams({
+        @ApiImplicitParam(required = true, name = "from", value = "First due date of the range", dataType = "LocalDate"),
+        @ApiImplicitParam(required = true, name = "to", value = "Last due date of the range", dataType = "LocalDate")
+    })
+    @GetMapping(value = "/byDueDate", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getByDueDateRange(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (from == null || to == null) {
+            log.error("Attempt to get invoices with null due date range.");
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        try {
+            return new ResponseEntity<>(invoiceService.getByDueDateRange(from, to), HttpStatus.OK);
+        } catch (Exception e) {
+            log.error("An error occured during getting invoices by due date range.");
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @ApiOperation(value = "Search invoices", notes = "Finds invoices matching all given criteria, ordered by id", response = Invoice[].class)
+    @ApiResponses({
+        @ApiResponse(code = 200, message = "OK", response = Invoice[].class),
+        @ApiResponse(code = 400, message = "Bad request"),
+        @ApiResponse(code = 500, message = "Internal server error")
+    })
+    @ApiImplicitParams({
+        @ApiImplicitParam(name = "buyerTaxId", value = "Tax id of the buyer", dataType = "String"),
+        @ApiImplicitParam(name = "sellerTaxId", value = "Tax id of the seller", dataType = "String"),
+        @ApiImplicitParam(name = "issuedFrom", value = "First issued date of the range", dataType = "LocalDate"),
+        @ApiImplicitParam(name = "issuedTo", value = "Last issued date of the range", dataType = "LocalDate"),
+        @ApiImplicitParam(name = "dueFrom", value = "First due date of the range", dataType = "LocalDate"),
+        @ApiImplicitParam(name = "dueTo", value = "Last due date of the range", dataType = "LocalDate"),
+        @ApiImplicitParam(name = "numberPrefix", value = "Beginning of invoice number", dataType = "String"),
+        @ApiImplicitParam(name = "minGross", value = "Lowest total gross value", dataType = "BigDecimal"),
+        @ApiImplicitParam(name = "maxGross", value = "Highest total gross value", dataType = "BigDecimal")
+    })
+    @GetMapping(value = "/search", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> search(@RequestParam(required = false) String buyerTaxId, @RequestParam(required = false) String sellerTaxId,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate issuedFrom,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate issuedTo,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dueFrom,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dueTo,
+        @RequestParam(required = false) String numberPrefix, @RequestParam(required = false) BigDecimal minGross, @RequestParam(required = false) BigDecimal maxGross) {
+        InvoiceQuery query = InvoiceQuery.builder()
+            .buyerTaxId(buyerTaxId)
+            .sellerTaxId(sellerTaxId)
+            .issuedFrom(issuedFrom)
+            .issuedTo(issuedTo)
+            .dueFrom(dueFrom)
+            .dueTo(dueTo)
+            .numberPrefix(numberPrefix)
+            .minGross(minGross)
+            .maxGross(maxGross)
+            .build();
+        try {
+            return new ResponseEntity<>(invoiceService.search(query), HttpStatus.OK);
+        } catch (Exception e) {
+            log.error("An error occured during searching invoices.");
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @ApiOperation(value = "Get totals", notes = "Sums invoice entries issued between given dates inclusively, grouped by VAT rate, month, seller or buyer", response = InvoiceTotals[].class)
+    @ApiResponses({
+        @ApiResponse(code = 200, message = "OK", response = InvoiceTotals[].class),
+        @ApiResponse(code = 400, message = "Bad request"),
+        @ApiResponse(code = 500, message = "Internal server error")
+    })
+    @ApiImplicitParams({
+        @ApiImplicitParam(required = true, name = "groupBy", value = "Grouping of the report", dataType = "ReportGrouping"),
+        @ApiImplicitParam(required = true, name = "from", value = "First issued date of the range", dataType = "LocalDate"),
+        @ApiImplicitParam(required = true, name = "to", value = "Last issued date of the range", dataType = "LocalDate")
+    })
+    @GetMapping(value = "/totals", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getTotals(@RequestParam(required = false) ReportGrouping groupBy, @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (groupBy == null || from == null || to == null) {
+            log.error("Attempt to get invoice totals with null grouping or issued date range.");
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        try {
+            return new ResponseEntity<>(invoiceService.getTotals(groupBy, from, to), HttpStatus.OK);
+        } catch (Exception e) {
+            log.error("An error occured during getting invoice totals.");
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     @DeleteMapping
     @ApiOperation(value = "Delete all Invoices", notes = "Erases all data in database")
     @ApiResponses({
@@ -241,6 +436,22 @@ public class InvoiceController {
         }
     }
 
+    @DeleteMapping(value = "/bulk", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ApiOperation(value = "Delete invoices in bulk", notes = "Deletes invoices with given ids, reporting the outcome of each of them", response = BulkOperationResult[].class)
+    @ApiResponses({
+        @ApiResponse(code = 200, message = "OK", response = BulkOperationResult[].class),
+        @ApiResponse(code = 500, message = "Internal server error")
+    })
+    @ApiImplicitParam(required = true, name = "ids", value = "Ids of invoices to delete", dataType = "Long", allowMultiple = true)
+    public ResponseEntity<?> deleteAllById(@RequestParam List<Long> ids) {
+        try {
+            return new ResponseEntity<>(invoiceService.deleteAllById(ids), HttpStatus.OK);
+        } catch (Exception e) {
+            log.error("An error occured during deleting invoices in bulk.");
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     @ApiOperation(value = "Delete by Id", notes = "Deletes Invoice with specific Id")
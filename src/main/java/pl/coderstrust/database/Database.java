@@ -1,21 +1,47 @@
 package pl.coderstrust.database;
 
+import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import pl.coderstrust.model.BulkOperationResult;
 import pl.coderstrust.model.Invoice;
+import pl.coderstrust.model.InvoiceQuery;
+import pl.coderstrust.model.InvoiceSummary;
+import pl.coderstrust.model.InvoiceTotals;
+import pl.coderstrust.model.ReportGrouping;
 
 public interface Database {
 
     Invoice save(Invoice invoice) throws DatabaseOperationException;
 
+    List<BulkOperationResult> saveAll(List<Invoice> invoices) throws DatabaseOperationException;
+
     void delete(Long id) throws DatabaseOperationException;
 
+    List<BulkOperationResult> deleteAllById(List<Long> ids) throws DatabaseOperationException;
+
     Optional<Invoice> getById(Long id) throws DatabaseOperationException;
 
     Optional<Invoice> getByNumber(String number) throws DatabaseOperationException;
 
+    Collection<Invoice> getByIssuedDateRange(LocalDate from, LocalDate to) throws DatabaseOperationException;
+
+    Collection<Invoice> getByDueDateRange(LocalDate from, LocalDate to) throws DatabaseOperationException;
+
+    List<Invoice> search(InvoiceQuery query) throws DatabaseOperationException;
+
+    List<InvoiceTotals> getTotals(ReportGrouping grouping, LocalDate from, LocalDate to) throws DatabaseOperationException;
+
     Collection<Invoice> getAll() throws DatabaseOperationException;
 
+    List<Invoice> getPage(Long afterId, int limit) throws DatabaseOperationException;
+
+    Stream<Invoice> streamAll() throws DatabaseOperationException;
+
+    List<InvoiceSummary> getSummaries() throws DatabaseOperationException;
+
     void deleteAll() throws DatabaseOperationException;
 
     boolean exists(Long id) throws DatabaseOperationException;
@@ -0,0 +1,308 @@
+package pl.coderstrust.database;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.coderstrust.configuration.MembershipFilterProperties;
+import pl.coderstrust.database.filter.BloomFilter;
+import pl.coderstrust.model.BulkOperationResult;
+import pl.coderstrust.model.Invoice;
+import pl.coderstrust.model.InvoiceQuery;
+import pl.coderstrust.model.InvoiceSummary;
+import pl.coderstrust.model.InvoiceTotals;
+import pl.coderstrust.model.ReportGrouping;
+
+public class FilteredDatabase implements Database, Closeable {
+
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+    private static final long NUMBER_SALT = 0x5BD1E9955BD1E995L;
+
+    private static Logger log = LoggerFactory.getLogger(FilteredDatabase.class);
+
+    private final Database database;
+    private final long expectedInvoices;
+    private final double falsePositiveRate;
+    private final ReadWriteLock filterLock = new ReentrantReadWriteLock();
+    private final Lock rebuildLock = new ReentrantLock();
+    private final LongAdder definiteMisses = new LongAdder();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "membership-filter-rebuilder");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile BloomFilter filter;
+    private volatile BloomFilter rebuildingFilter;
+
+    public FilteredDatabase(Database database, MembershipFilterProperties membershipFilterProperties) {
+        if (database == null) {
+            log.error("Attempt to initialize membership filter with null database.");
+            throw new IllegalArgumentException("Database cannot be null.");
+        }
+        if (membershipFilterProperties == null) {
+            log.error("Attempt to initialize membership filter with null properties.");
+            throw new IllegalArgumentException("Properties cannot be null.");
+        }
+        this.database = database;
+        this.expectedInvoices = membershipFilterProperties.getExpectedInvoices();
+        this.falsePositiveRate = membershipFilterProperties.getFalsePositiveRate();
+        try {
+            rebuild();
+        } catch (DatabaseOperationException e) {
+            log.error("An error occurred during building membership filter, every lookup will reach the database until it is rebuilt.", e);
+        }
+    }
+
+    @Override
+    public Invoice save(Invoice invoice) throws DatabaseOperationException {
+        BloomFilter currentFilter;
+        Invoice savedInvoice;
+        filterLock.readLock().lock();
+        try {
+            // The filter being rebuilt is read first, so a write racing with the swap still reaches the filter that stays.
+            BloomFilter nextFilter = rebuildingFilter;
+            currentFilter = filter;
+            // Keys go in before the write, so a failed write leaves only a false positive and never a false negative.
+            if (invoice != null) {
+                put(currentFilter, nextFilter, invoice);
+            }
+            savedInvoice = database.save(invoice);
+            put(currentFilter, nextFilter, savedInvoice);
+        } finally {
+            filterLock.readLock().unlock();
+        }
+        if (currentFilter != null && currentFilter.getInsertions() > currentFilter.getCapacity()) {
+            rebuildSaturated(currentFilter);
+        }
+        return savedInvoice;
+    }
+
+    @Override
+    public List<BulkOperationResult> saveAll(List<Invoice> invoices) throws DatabaseOperationException {
+        BloomFilter currentFilter;
+        List<BulkOperationResult> results;
+        filterLock.readLock().lock();
+        try {
+            final BloomFilter nextFilter = rebuildingFilter;
+            currentFilter = filter;
+            if (invoices != null) {
+                invoices.stream()
+                    .filter(Objects::nonNull)
+                    .forEach(invoice -> put(currentFilter, nextFilter, invoice));
+            }
+            results = database.saveAll(invoices);
+            results.stream()
+                .filter(BulkOperationResult::isSucceeded)
+                .forEach(result -> put(currentFilter, nextFilter, result.getInvoice()));
+        } finally {
+            filterLock.readLock().unlock();
+        }
+        if (currentFilter != null && currentFilter.getInsertions() > currentFilter.getCapacity()) {
+            rebuildSaturated(currentFilter);
+        }
+        return results;
+    }
+
+    @Override
+    public void delete(Long id) throws DatabaseOperationException {
+        database.delete(id);
+    }
+
+    @Override
+    public List<BulkOperationResult> deleteAllById(List<Long> ids) throws DatabaseOperationException {
+        return database.deleteAllById(ids);
+    }
+
+    @Override
+    public Optional<Invoice> getById(Long id) throws DatabaseOperationException {
+        if (id != null && isDefinitelyAbsent(id)) {
+            return Optional.empty();
+        }
+        return database.getById(id);
+    }
+
+    @Override
+    public Optional<Invoice> getByNumber(String number) throws DatabaseOperationException {
+        if (number != null && isDefinitelyAbsent(numberKey(number))) {
+            return Optional.empty();
+        }
+        return database.getByNumber(number);
+    }
+
+    @Override
+    public Collection<Invoice> getByIssuedDateRange(LocalDate from, LocalDate to) throws DatabaseOperationException {
+        return database.getByIssuedDateRange(from, to);
+    }
+
+    @Override
+    public Collection<Invoice> getByDueDateRange(LocalDate from, LocalDate to) throws DatabaseOperationException {
+        return database.getByDueDateRange(from, to);
+    }
+
+    @Override
+    public List<Invoice> search(InvoiceQuery query) throws DatabaseOperationException {
+        return database.search(query);
+    }
+
+    @Override
+    public List<InvoiceTotals> getTotals(ReportGrouping grouping, LocalDate from, LocalDate to) throws DatabaseOperationException {
+        return database.getTotals(grouping, from, to);
+    }
+
+    @Override
+    public Collection<Invoice> getAll() throws DatabaseOperationException {
+        return database.getAll();
+    }
+
+    @Override
+    public List<Invoice> getPage(Long afterId, int limit) throws DatabaseOperationException {
+        return database.getPage(afterId, limit);
+    }
+
+    @Override
+    public Stream<Invoice> streamAll() throws DatabaseOperationException {
+        return database.streamAll();
+    }
+
+    @Override
+    public List<InvoiceSummary> getSummaries() throws DatabaseOperationException {
+        return database.getSummaries();
+    }
+
+    @Override
+    public void deleteAll() throws DatabaseOperationException {
+        filterLock.writeLock().lock();
+        try {
+            database.deleteAll();
+            filter = new BloomFilter(2 * expectedInvoices, falsePositiveRate);
+        } finally {
+            filterLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean exists(Long id) throws DatabaseOperationException {
+        if (id != null && isDefinitelyAbsent(id)) {
+            return false;
+        }
+        return database.exists(id);
+    }
+
+    @Override
+    public long count() throws DatabaseOperationException {
+        return database.count();
+    }
+
+    public void rebuild() throws DatabaseOperationException {
+        rebuildLock.lock();
+        try {
+            // Ids and numbers share the filter, so every invoice takes up to two keys.
+            BloomFilter rebuiltFilter = new BloomFilter(2 * Math.max(expectedInvoices, 2L * database.count()), falsePositiveRate);
+            // Only installing the new filter waits for writes in flight, the invoices are read while saves go on and
+            // reach both filters.
+            filterLock.writeLock().lock();
+            try {
+                rebuildingFilter = rebuiltFilter;
+            } finally {
+                filterLock.writeLock().unlock();
+            }
+            try {
+                Collection<Invoice> invoices = database.getAll();
+                invoices.forEach(invoice -> put(rebuiltFilter, invoice));
+                filter = rebuiltFilter;
+                log.info("Membership filter has been built for {} invoices with {} bits and {} hash functions.", invoices.size(), rebuiltFilter.getBitCount(), rebuiltFilter.getHashCount());
+            } finally {
+                rebuildingFilter = null;
+            }
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    public long getDefiniteMisses() {
+        return definiteMisses.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        rebuilder.shutdownNow();
+        if (database instanceof Closeable) {
+            ((Closeable) database).close();
+        }
+    }
+
+    private boolean isDefinitelyAbsent(long key) {
+        BloomFilter currentFilter = filter;
+        if (currentFilter == null || currentFilter.mightContain(key)) {
+            return false;
+        }
+        definiteMisses.increment();
+        return true;
+    }
+
+    private void rebuildSaturated(BloomFilter saturatedFilter) {
+        if (!rebuildScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            rebuilder.execute(() -> {
+                try {
+                    if (filter == saturatedFilter) {
+                        rebuild();
+                    }
+                } catch (DatabaseOperationException e) {
+                    log.error("An error occurred during rebuilding membership filter, keeping the saturated one.", e);
+                } finally {
+                    rebuildScheduled.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rebuildScheduled.set(false);
+        }
+    }
+
+    private static void put(BloomFilter currentFilter, BloomFilter nextFilter, Invoice invoice) {
+        if (currentFilter != null) {
+            put(currentFilter, invoice);
+        }
+        if (nextFilter != null) {
+            put(nextFilter, invoice);
+        }
+    }
+
+    private static void put(BloomFilter filter, Invoice invoice) {
+        if (invoice.getId() != null) {
+            filter.put(invoice.getId());
+        }
+        if (invoice.getNumber() != null) {
+            filter.put(numberKey(invoice.getNumber()));
+        }
+    }
+
+    private static long numberKey(String number) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte value : number.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= value & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash ^ NUMBER_SALT;
+    }
+}
@@ -1,27 +1,50 @@
 package pl.coderstrust.database;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.dao.NonTransientDataAccessException;
 import org.springframework.data.domain.Example;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Repository;
 import pl.coderstrust.database.hibernate.HibernateModelMapper;
+import pl.coderstrust.database.hibernate.InvoiceSpecifications;
+import pl.coderstrust.model.BulkOperationResult;
 import pl.coderstrust.model.Invoice;
 import pl.coderstrust.model.Invoice.InvoiceBuilder;
+import pl.coderstrust.model.InvoiceQuery;
+import pl.coderstrust.model.InvoiceSummary;
+import pl.coderstrust.model.InvoiceTotals;
+import pl.coderstrust.model.ReportGrouping;
 
 @Repository
 @ConditionalOnProperty(name = "pl.coderstrust.database", havingValue = "hibernate")
 public class HibernateDatabase implements Database {
+    private static final int STREAM_FETCH_SIZE = 500;
+
     private final InvoiceRepository invoiceRepository;
     private final HibernateModelMapper modelMapper;
+    private final EntityManagerFactory entityManagerFactory;
 
     private static Logger log = LoggerFactory.getLogger(HibernateDatabase.class);
 
-    public HibernateDatabase(InvoiceRepository invoiceRepository, HibernateModelMapper modelMapper) {
+    public HibernateDatabase(InvoiceRepository invoiceRepository, HibernateModelMapper modelMapper, EntityManagerFactory entityManagerFactory) {
         if (invoiceRepository == null) {
             log.error("Database is empty.");
             throw new IllegalArgumentException("Database is empty.");
@@ -30,8 +53,13 @@ public class HibernateDatabase implements Database {
             log.error("Attempt to initialize database with null mapper.");
             throw new IllegalArgumentException("Mapper cannot be null.");
         }
+        if (entityManagerFactory == null) {
+            log.error("Attempt to initialize database with null entity manager factory.");
+            throw new IllegalArgumentException("Entity manager factory cannot be null.");
+        }
         this.invoiceRepository = invoiceRepository;
         this.modelMapper = modelMapper;
+        this.entityManagerFactory = entityManagerFactory;
     }
 
     @Override
@@ -51,6 +79,32 @@ public class HibernateDatabase implements Database {
         }
     }
 
+    @Override
+    public List<BulkOperationResult> saveAll(List<Invoice> invoices) throws DatabaseOperationException {
+        if (invoices == null) {
+            log.error("Attempt to add null list of invoices to database.");
+            throw new IllegalArgumentException("Invoices cannot be null.");
+        }
+        List<pl.coderstrust.database.hibernate.Invoice> savedInvoices;
+        try {
+            savedInvoices = invoiceRepository.saveAll(invoices.stream()
+                .filter(Objects::nonNull)
+                .map(modelMapper::mapToHibernateInvoice)
+                .collect(Collectors.toList()));
+        } catch (NonTransientDataAccessException e) {
+            // The batch is rolled back as a whole, so save invoices one by one to tell which of them failed.
+            log.warn("Bulk save of {} invoices has failed, saving them one by one.", invoices.size(), e);
+            return saveOneByOne(invoices);
+        }
+        Iterator<pl.coderstrust.database.hibernate.Invoice> savedInvoice = savedInvoices.iterator();
+        List<BulkOperationResult> results = new ArrayList<>(invoices.size());
+        for (Invoice invoice : invoices) {
+            results.add(invoice == null ? BulkOperationResult.failed(null, "Invoice cannot be null.") : BulkOperationResult.saved(modelMapper.mapToInvoice(savedInvoice.next())));
+        }
+        log.debug("Bulk save of {} invoices has been completed.", invoices.size());
+        return results;
+    }
+
     @Override
     public void delete(Long id) throws DatabaseOperationException {
         if (id == null) {
@@ -71,6 +125,35 @@ public class HibernateDatabase implements Database {
         }
     }
 
+    @Override
+    public List<BulkOperationResult> deleteAllById(List<Long> ids) throws DatabaseOperationException {
+        if (ids == null) {
+            log.error("Attempt to delete invoices by null list of ids.");
+            throw new IllegalArgumentException("Invoice ids cannot be null.");
+        }
+        try {
+            List<pl.coderstrust.database.hibernate.Invoice> existingInvoices = invoiceRepository.findAllById(ids.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList()));
+            invoiceRepository.deleteAll(existingInvoices);
+            Set<Long> existingIds = existingInvoices.stream().map(pl.coderstrust.database.hibernate.Invoice::getId).collect(Collectors.toSet());
+            List<BulkOperationResult> results = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                if (id == null) {
+                    results.add(BulkOperationResult.failed(null, "Invoice id cannot be null."));
+                } else if (existingIds.remove(id)) {
+                    results.add(BulkOperationResult.deleted(id));
+                } else {
+                    results.add(BulkOperationResult.failed(id, String.format("There is no invoice with id: %s", id)));
+                }
+            }
+            log.debug("Bulk delete of {} invoices has been completed.", ids.size());
+            return results;
+        } catch (NonTransientDataAccessException e) {
+            String message = "An error occurred during deleting invoices.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
     @Override
     public Optional<Invoice> getById(Long id) throws DatabaseOperationException {
         if (id == null) {
@@ -113,6 +196,60 @@ public class HibernateDatabase implements Database {
         }
     }
 
+    @Override
+    public Collection<Invoice> getByIssuedDateRange(LocalDate from, LocalDate to) throws DatabaseOperationException {
+        if (from == null || to == null) {
+            log.error("Attempt to get invoices by null issued date range.");
+            throw new IllegalArgumentException("Date range bounds cannot be null.");
+        }
+        try {
+            return modelMapper.mapToInvoices(invoiceRepository.findAllByIssuedDateBetween(from, to));
+        } catch (NonTransientDataAccessException e) {
+            String message = "An error occurred during getting invoices by issued date range.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    @Override
+    public Collection<Invoice> getByDueDateRange(LocalDate from, LocalDate to) throws DatabaseOperationException {
+        if (from == null || to == null) {
+            log.error("Attempt to get invoices by null due date range.");
+            throw new IllegalArgumentException("Date range bounds cannot be null.");
+        }
+        try {
+            return modelMapper.mapToInvoices(invoiceRepository.findAllByDueDateBetween(from, to));
+        } catch (NonTransientDataAccessException e) {
+            String message = "An error occurred during getting invoices by due date range.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    @Override
+    public List<Invoice> search(InvoiceQuery query) throws DatabaseOperationException {
+        if (query == null) {
+            log.error("Attempt to search invoices by null query.");
+            throw new IllegalArgumentException("Query cannot be null.");
+        }
+        try {
+            return new ArrayList<>(modelMapper.mapToInvoices(invoiceRepository.findAll(InvoiceSpecifications.matching(query), Sort.by(Sort.Direction.ASC, "id"))));
+        } catch (NonTransientDataAccessException e) {
+            String message = "An error occurred during searching invoices.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    @Override
+    public List<InvoiceTotals> getTotals(ReportGrouping grouping, LocalDate from, LocalDate to) throws DatabaseOperationException {
+        if (grouping == null) {
+            log.error("Attempt to get invoice totals with null grouping.");
+            throw new IllegalArgumentException("Report grouping cannot be null.");
+        }
+        return InvoiceTotalsCalculator.calculate(getByIssuedDateRange(from, to), grouping);
+    }
+
     @Override
     public Collection<Invoice> getAll() throws DatabaseOperationException {
         try {
@@ -125,6 +262,57 @@ public class HibernateDatabase implements Database {
         }
     }
 
+    @Override
+    public List<Invoice> getPage(Long afterId, int limit) throws DatabaseOperationException {
+        if (limit <= 0) {
+            log.error("Attempt to get page of invoices with non-positive limit.");
+            throw new IllegalArgumentException("Page limit must be greater than zero.");
+        }
+        try {
+            return new ArrayList<>(modelMapper.mapToInvoices(invoiceRepository.findAllByIdGreaterThanOrderByIdAsc(afterId == null ? Long.MIN_VALUE : afterId, PageRequest.of(0, limit))));
+        } catch (NonTransientDataAccessException e) {
+            String message = "An error occurred during getting page of invoices.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    @Override
+    public Stream<Invoice> streamAll() throws DatabaseOperationException {
+        // The cursor needs its own session and transaction so the connection stays open until the caller closes the stream.
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            Session session = entityManager.unwrap(Session.class);
+            return session.createQuery("select i from Invoice i order by i.id", pl.coderstrust.database.hibernate.Invoice.class)
+                .setReadOnly(true)
+                .setFetchSize(STREAM_FETCH_SIZE)
+                .stream()
+                .map(invoice -> {
+                    Invoice mappedInvoice = modelMapper.mapToInvoice(invoice);
+                    session.evict(invoice);
+                    return mappedInvoice;
+                })
+                .onClose(() -> closeEntityManager(entityManager));
+        } catch (PersistenceException e) {
+            closeEntityManager(entityManager);
+            String message = "An error occurred during streaming all invoices.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    @Override
+    public List<InvoiceSummary> getSummaries() throws DatabaseOperationException {
+        try {
+            return modelMapper.mapToInvoiceSummaries(invoiceRepository.findAllSummaries());
+        } catch (NonTransientDataAccessException e) {
+            String message = "An error occurred during getting invoice summaries.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
     @Override
     public void deleteAll() throws DatabaseOperationException {
         try {
@@ -162,4 +350,30 @@ public class HibernateDatabase implements Database {
             throw new DatabaseOperationException(message, e);
         }
     }
+
+    private List<BulkOperationResult> saveOneByOne(List<Invoice> invoices) {
+        List<BulkOperationResult> results = new ArrayList<>(invoices.size());
+        for (Invoice invoice : invoices) {
+            if (invoice == null) {
+                results.add(BulkOperationResult.failed(null, "Invoice cannot be null."));
+                continue;
+            }
+            try {
+                results.add(BulkOperationResult.saved(save(invoice)));
+            } catch (DatabaseOperationException e) {
+                results.add(BulkOperationResult.failed(invoice.getId(), e.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    private void closeEntityManager(EntityManager entityManager) {
+        try {
+            if (entityManager.getTransaction().isActive()) {
+                entityManager.getTransaction().rollback();
+            }
+        } finally {
+            entityManager.close();
+        }
+    }
 }
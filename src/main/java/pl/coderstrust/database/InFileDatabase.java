@@ -1,13 +1,33 @@
 package pl.coderstrust.database;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,7 +35,12 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 import pl.coderstrust.configuration.InFileDatabaseProperties;
 import pl.coderstrust.helpers.FileHelper;
+import pl.coderstrust.model.BulkOperationResult;
 import pl.coderstrust.model.Invoice;
+import pl.coderstrust.model.InvoiceQuery;
+import pl.coderstrust.model.InvoiceSummary;
+import pl.coderstrust.model.InvoiceTotals;
+import pl.coderstrust.model.ReportGrouping;
 
 @Repository
 @ConditionalOnProperty(name = "pl.coderstrust.database", havingValue = "in-file")
@@ -49,13 +74,54 @@ public class InFileDatabase implements Database {
             }
             log.debug("Invoice has been successfully updated.");
             return updateInvoice(invoice);
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             String message = "An error occurred during saving invoice.";
             log.error(message, e);
             throw new DatabaseOperationException(message, e);
         }
     }
 
+    @Override
+    public synchronized List<BulkOperationResult> saveAll(List<Invoice> invoices) throws DatabaseOperationException {
+        if (invoices == null) {
+            log.error("Attempt to add null list of invoices to database.");
+            throw new IllegalArgumentException("Invoices cannot be null.");
+        }
+        try {
+            Map<Long, Integer> positions = getPositionsInDatabase();
+            Map<Integer, String> updatedLines = new HashMap<>();
+            List<String> insertedLines = new ArrayList<>();
+            List<BulkOperationResult> results = new ArrayList<>(invoices.size());
+            for (Invoice invoice : invoices) {
+                if (invoice == null) {
+                    results.add(BulkOperationResult.failed(null, "Invoice cannot be null."));
+                    continue;
+                }
+                Integer position = invoice.getId() == null ? null : positions.get(invoice.getId());
+                Invoice savedInvoice = buildInvoice(position == null ? nextId.incrementAndGet() : invoice.getId(), invoice);
+                if (position == null) {
+                    insertedLines.add(mapper.writeValueAsString(savedInvoice));
+                } else {
+                    updatedLines.put(position, mapper.writeValueAsString(savedInvoice));
+                }
+                results.add(BulkOperationResult.saved(savedInvoice));
+            }
+            // Updates cost one rewrite of the file and inserts a single append, however many invoices are saved.
+            if (!updatedLines.isEmpty()) {
+                fileHelper.replaceLines(filePath, updatedLines);
+            }
+            if (!insertedLines.isEmpty()) {
+                fileHelper.writeLines(filePath, insertedLines);
+            }
+            log.debug("Bulk save of {} invoices has been completed.", invoices.size());
+            return results;
+        } catch (IOException | UncheckedIOException e) {
+            String message = "An error occurred during saving invoices.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
     @Override
     public synchronized void delete(Long id) throws DatabaseOperationException {
         if (id == null) {
@@ -65,24 +131,55 @@ public class InFileDatabase implements Database {
         try {
             fileHelper.removeLine(filePath, getPositionInDatabase(id));
             log.debug("Invoice with id {} has been successfully deleted.", id);
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             String message = "An error occurred during deleting invoice.";
             log.error(message, e);
             throw new DatabaseOperationException(message, e);
         }
     }
 
+    @Override
+    public synchronized List<BulkOperationResult> deleteAllById(List<Long> ids) throws DatabaseOperationException {
+        if (ids == null) {
+            log.error("Attempt to delete invoices by null list of ids.");
+            throw new IllegalArgumentException("Invoice ids cannot be null.");
+        }
+        try {
+            Map<Long, Integer> positions = getPositionsInDatabase();
+            Set<Integer> removedLines = new HashSet<>();
+            List<BulkOperationResult> results = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                if (id == null) {
+                    results.add(BulkOperationResult.failed(null, "Invoice id cannot be null."));
+                } else if (positions.containsKey(id) && removedLines.add(positions.get(id))) {
+                    results.add(BulkOperationResult.deleted(id));
+                } else {
+                    results.add(BulkOperationResult.failed(id, String.format("There is no invoice with id: %s", id)));
+                }
+            }
+            if (!removedLines.isEmpty()) {
+                fileHelper.removeLines(filePath, removedLines);
+            }
+            log.debug("Bulk delete of {} invoices has been completed.", ids.size());
+            return results;
+        } catch (IOException | UncheckedIOException e) {
+            String message = "An error occurred during deleting invoices.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
     @Override
     public Optional<Invoice> getById(Long id) throws DatabaseOperationException {
         if (id == null) {
             log.error("Attempt to get invoice by null id.");
             throw new IllegalArgumentException("Invoice id cannot be null.");
         }
-        try {
-            return getInvoices().stream()
-                .filter(s -> s.getId().equals(id))
+        try (Stream<Invoice> invoices = streamInvoices()) {
+            return invoices
+                .filter(invoice -> id.equals(invoice.getId()))
                 .findFirst();
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             String message = "An error occurred during getting invoice by id.";
             log.error(message, e);
             throw new DatabaseOperationException(message, e);
@@ -95,11 +192,11 @@ public class InFileDatabase implements Database {
             log.error("Attempt to get invoice by null number.");
             throw new IllegalArgumentException("Invoice number cannot be null.");
         }
-        try {
-            return getInvoices().stream()
-                .filter(s -> s.getNumber().equals(number))
+        try (Stream<Invoice> invoices = streamInvoices()) {
+            return invoices
+                .filter(invoice -> number.equals(invoice.getNumber()))
                 .findFirst();
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             String message = "An error occurred during getting invoice by number.";
             log.error(message, e);
             throw new DatabaseOperationException(message, e);
@@ -107,15 +204,123 @@ public class InFileDatabase implements Database {
 
     }
 
+    @Override
+    public Collection<Invoice> getByIssuedDateRange(LocalDate from, LocalDate to) throws DatabaseOperationException {
+        if (from == null || to == null) {
+            log.error("Attempt to get invoices by null issued date range.");
+            throw new IllegalArgumentException("Date range bounds cannot be null.");
+        }
+        return getByDateRange(Invoice::getIssuedDate, from, to, "An error occurred during getting invoices by issued date range.");
+    }
+
+    @Override
+    public Collection<Invoice> getByDueDateRange(LocalDate from, LocalDate to) throws DatabaseOperationException {
+        if (from == null || to == null) {
+            log.error("Attempt to get invoices by null due date range.");
+            throw new IllegalArgumentException("Date range bounds cannot be null.");
+        }
+        return getByDateRange(Invoice::getDueDate, from, to, "An error occurred during getting invoices by due date range.");
+    }
+
+    @Override
+    public List<Invoice> search(InvoiceQuery query) throws DatabaseOperationException {
+        if (query == null) {
+            log.error("Attempt to search invoices by null query.");
+            throw new IllegalArgumentException("Query cannot be null.");
+        }
+        try (Stream<Invoice> invoices = streamInvoices()) {
+            return invoices
+                .filter(invoice -> InvoiceQueryMatcher.matches(query, invoice))
+                .sorted(Comparator.comparing(Invoice::getId))
+                .collect(Collectors.toList());
+        } catch (IOException | UncheckedIOException e) {
+            String message = "An error occurred during searching invoices.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    @Override
+    public List<InvoiceTotals> getTotals(ReportGrouping grouping, LocalDate from, LocalDate to) throws DatabaseOperationException {
+        if (grouping == null) {
+            log.error("Attempt to get invoice totals with null grouping.");
+            throw new IllegalArgumentException("Report grouping cannot be null.");
+        }
+        return InvoiceTotalsCalculator.calculate(getByIssuedDateRange(from, to), grouping);
+    }
+
+    private Collection<Invoice> getByDateRange(Function<Invoice, LocalDate> dateField, LocalDate from, LocalDate to, String message) throws DatabaseOperationException {
+        try (Stream<Invoice> invoices = streamInvoices()) {
+            return invoices
+                .filter(invoice -> dateField.apply(invoice) != null && !dateField.apply(invoice).isBefore(from) && !dateField.apply(invoice).isAfter(to))
+                .collect(Collectors.toList());
+        } catch (IOException | UncheckedIOException e) {
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
     @Override
     public Collection<Invoice> getAll() throws DatabaseOperationException {
+        try (Stream<Invoice> invoices = streamInvoices()) {
+            return invoices.collect(Collectors.toList());
+        } catch (IOException | UncheckedIOException e) {
+            String message = "An error occurred during getting all invoices.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    @Override
+    public Stream<Invoice> streamAll() throws DatabaseOperationException {
         try {
-            return getInvoices();
+            return streamInvoices();
         } catch (IOException e) {
-            String message = "An error occurred during getting all invoices.";
+            String message = "An error occurred during streaming all invoices.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    @Override
+    public List<InvoiceSummary> getSummaries() throws DatabaseOperationException {
+        try (Stream<Invoice> invoices = streamInvoices()) {
+            return invoices
+                .map(InvoiceTotalsCalculator::summarize)
+                .sorted(Comparator.comparing(InvoiceSummary::getId))
+                .collect(Collectors.toList());
+        } catch (IOException | UncheckedIOException e) {
+            String message = "An error occurred during getting invoice summaries.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    @Override
+    public List<Invoice> getPage(Long afterId, int limit) throws DatabaseOperationException {
+        if (limit <= 0) {
+            log.error("Attempt to get page of invoices with non-positive limit.");
+            throw new IllegalArgumentException("Page limit must be greater than zero.");
+        }
+        // The file has no index, so keep only the lowest ids seen while streaming it instead of sorting the whole tail.
+        PriorityQueue<Invoice> page = new PriorityQueue<>(Comparator.comparing(Invoice::getId).reversed());
+        try (Stream<Invoice> invoices = streamInvoices()) {
+            invoices
+                .filter(invoice -> afterId == null || invoice.getId() > afterId)
+                .forEach(invoice -> {
+                    page.add(invoice);
+                    if (page.size() > limit) {
+                        page.poll();
+                    }
+                });
+        } catch (IOException | UncheckedIOException e) {
+            String message = "An error occurred during getting page of invoices.";
             log.error(message, e);
             throw new DatabaseOperationException(message, e);
         }
+        List<Invoice> invoices = new ArrayList<>(page);
+        invoices.sort(Comparator.comparing(Invoice::getId));
+        return invoices;
     }
 
     @Override
@@ -136,11 +341,9 @@ public class InFileDatabase implements Database {
             log.error("Attempt to check if invoice exists by null id.");
             throw new IllegalArgumentException("Invoice id cannot be null.");
         }
-        try {
-            return getInvoices()
-                .stream()
-                .anyMatch(invoice -> invoice.getId().equals(id));
-        } catch (IOException e) {
+        try (Stream<Invoice> invoices = streamInvoices()) {
+            return invoices.anyMatch(invoice -> id.equals(invoice.getId()));
+        } catch (IOException | UncheckedIOException e) {
             String message = "An error occurred during checking if invoice exists.";
             log.error(message, e);
             throw new DatabaseOperationException(message, e);
@@ -149,9 +352,9 @@ public class InFileDatabase implements Database {
 
     @Override
     public long count() throws DatabaseOperationException {
-        try {
-            return getInvoices().size();
-        } catch (IOException e) {
+        try (Stream<Invoice> invoices = streamInvoices()) {
+            return invoices.count();
+        } catch (IOException | UncheckedIOException e) {
             String message = "An error occurred during counting invoices.";
             log.error(message, e);
             throw new DatabaseOperationException(message, e);
@@ -161,28 +364,23 @@ public class InFileDatabase implements Database {
     private void initFile() throws IOException {
         if (!fileHelper.exists(filePath)) {
             fileHelper.createFile(filePath);
+            nextId = new AtomicLong(0);
+            return;
         }
-        nextId = new AtomicLong(getLastInvoiceId());
+        nextId = new AtomicLong(getHighestInvoiceId());
     }
 
-    private Invoice deserializeJsonToInvoice(String json)  {
-        try {
-            return mapper.readValue(json, Invoice.class);
-        } catch (IOException e) {
-            return null;
-        }
-    }
-
-    private long getLastInvoiceId() throws IOException {
-        String lastLine = fileHelper.readLastLine(filePath);
-        if (lastLine == null) {
-            return 0;
-        }
-        Invoice invoice = deserializeJsonToInvoice(lastLine);
-        if (invoice == null) {
-            return 0;
+    private long getHighestInvoiceId() throws IOException {
+        try (Stream<Invoice> invoices = streamInvoices()) {
+            return invoices
+                .map(Invoice::getId)
+                .filter(Objects::nonNull)
+                .mapToLong(Long::longValue)
+                .max()
+                .orElse(0);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
-        return invoice.getId();
     }
 
     private Invoice insertInvoice(Invoice invoice) throws IOException {
@@ -214,21 +412,96 @@ public class InFileDatabase implements Database {
         return updatedInvoice;
     }
 
-    private List<Invoice> getInvoices() throws IOException {
-        return fileHelper.readLines(filePath).stream()
-            .map(invoice -> deserializeJsonToInvoice(invoice))
-            .filter(Objects::nonNull)
-            .collect(Collectors.toList());
+    private Stream<Invoice> streamInvoices() throws IOException {
+        InputStream inputStream = fileHelper.newInputStream(filePath);
+        try {
+            MappingIterator<Invoice> iterator = mapper.readerFor(Invoice.class).readValues(inputStream);
+            return StreamSupport.stream(new InvoiceSpliterator(iterator), false)
+                .onClose(() -> {
+                    try {
+                        iterator.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+        } catch (IOException e) {
+            inputStream.close();
+            throw e;
+        }
     }
 
     private int getPositionInDatabase(Long id) throws IOException, DatabaseOperationException {
-        List<Invoice> invoices = getInvoices();
-        Optional<Invoice> invoice = invoices.stream()
-            .filter(s -> s.getId().equals(id))
-            .findFirst();
-        if (invoice.isEmpty()) {
-            throw new DatabaseOperationException(String.format("There is no invoice with id: %s", id));
-        }
-        return invoices.indexOf(invoice.get()) + 1;
+        try (Stream<Invoice> invoices = streamInvoices()) {
+            Iterator<Invoice> iterator = invoices.iterator();
+            int position = 0;
+            while (iterator.hasNext()) {
+                position++;
+                if (id.equals(iterator.next().getId())) {
+                    return position;
+                }
+            }
+        }
+        throw new DatabaseOperationException(String.format("There is no invoice with id: %s", id));
+    }
+
+    private Map<Long, Integer> getPositionsInDatabase() throws IOException {
+        Map<Long, Integer> positions = new HashMap<>();
+        try (Stream<Invoice> invoices = streamInvoices()) {
+            Iterator<Invoice> iterator = invoices.iterator();
+            int position = 0;
+            while (iterator.hasNext()) {
+                position++;
+                Long id = iterator.next().getId();
+                if (id != null) {
+                    positions.putIfAbsent(id, position);
+                }
+            }
+        }
+        return positions;
+    }
+
+    private Invoice buildInvoice(Long id, Invoice invoice) {
+        return Invoice.builder()
+            .id(id)
+            .number(invoice.getNumber())
+            .dueDate(invoice.getDueDate())
+            .issuedDate(invoice.getIssuedDate())
+            .buyer(invoice.getBuyer())
+            .seller(invoice.getSeller())
+            .entries(invoice.getEntries())
+            .build();
+    }
+
+    private static class InvoiceSpliterator extends Spliterators.AbstractSpliterator<Invoice> {
+
+        private final MappingIterator<Invoice> iterator;
+
+        InvoiceSpliterator(MappingIterator<Invoice> iterator) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Invoice> action) {
+            while (true) {
+                try {
+                    if (!iterator.hasNextValue()) {
+                        return false;
+                    }
+                    Invoice invoice = iterator.nextValue();
+                    if (invoice != null) {
+                        action.accept(invoice);
+                        return true;
+                    }
+                } catch (JsonParseException e) {
+                    log.warn("Stopping at malformed invoice in database file.");
+                    return false;
+                } catch (JsonMappingException e) {
+                    log.warn("Skipping invoice which cannot be deserialized from database file.");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,507 @@
+package pl.coderstrust.database;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import pl.coderstrust.configuration.InFileDatabaseProperties;
+import pl.coderstrust.database.file.CompactionStats;
+import pl.coderstrust.database.file.GroupCommitWriter;
+import pl.coderstrust.database.file.InvoiceLog;
+import pl.coderstrust.database.file.LegacyFileConverter;
+import pl.coderstrust.database.file.LogCheckpoint;
+import pl.coderstrust.database.file.LogCheckpointer;
+import pl.coderstrust.database.file.LogCompactor;
+import pl.coderstrust.database.file.LogIndex;
+import pl.coderstrust.database.file.LogRecord;
+import pl.coderstrust.database.file.RecordLocation;
+import pl.coderstrust.model.BulkOperationResult;
+import pl.coderstrust.model.Invoice;
+import pl.coderstrust.model.InvoiceQuery;
+import pl.coderstrust.model.InvoiceSummary;
+import pl.coderstrust.model.InvoiceTotals;
+import pl.coderstrust.model.ReportGrouping;
+
+@Repository
+@ConditionalOnProperty(name = "pl.coderstrust.database", havingValue = "in-file-log")
+public class InFileLogDatabase implements Database, Closeable {
+
+    private static final int STREAM_BATCH_SIZE = 256;
+
+    private final InvoiceLog invoiceLog;
+    private final LogIndex index = new LogIndex();
+    private final AtomicLong nextId = new AtomicLong(0);
+    // Fair, so the writer holding it across group commits cannot starve compaction and checkpoints.
+    private final Lock writeLock = new ReentrantLock(true);
+    private final LogCompactor compactor;
+    private final GroupCommitWriter writer;
+    private final LogCheckpointer checkpointer;
+    private final boolean checkpointEnabled;
+    private final long operationTimeoutMillis;
+
+    private static Logger log = LoggerFactory.getLogger(InFileLogDatabase.class);
+
+    @Autowired
+    public InFileLogDatabase(InFileDatabaseProperties inFileDatabaseProperties, ObjectMapper mapper) throws IOException {
+        if (inFileDatabaseProperties == null) {
+            log.error("Attempt to initialize database with null properties.");
+            throw new IllegalArgumentException("Properties cannot be null.");
+        }
+        this.invoiceLog = new InvoiceLog(Paths.get(inFileDatabaseProperties.getLogDirectory()), mapper, inFileDatabaseProperties.getSegmentSize(), inFileDatabaseProperties.getLogFormat());
+        if (inFileDatabaseProperties.isImportLegacyFile()) {
+            importLegacyFile(Paths.get(inFileDatabaseProperties.getFilePath()), mapper);
+        }
+        this.checkpointEnabled = inFileDatabaseProperties.isCheckpointEnabled();
+        this.operationTimeoutMillis = inFileDatabaseProperties.getOperationTimeout();
+        replayLog();
+        this.writer = new GroupCommitWriter(invoiceLog, index, nextId, writeLock, inFileDatabaseProperties.getFsyncPolicy(), inFileDatabaseProperties.getFsyncInterval(), inFileDatabaseProperties.getMaxBatchSize());
+        this.compactor = new LogCompactor(invoiceLog, index, writeLock, inFileDatabaseProperties.getCompactionDeadRecordRatio(), inFileDatabaseProperties.getCompactionMinSize());
+        if (inFileDatabaseProperties.isCompactionEnabled()) {
+            compactor.start(inFileDatabaseProperties.getCompactionInterval());
+        }
+        this.checkpointer = new LogCheckpointer(invoiceLog, index, nextId, writeLock);
+        if (checkpointEnabled) {
+            checkpointer.start(inFileDatabaseProperties.getCheckpointInterval());
+        }
+    }
+
+    @Override
+    public Invoice save(Invoice invoice) throws DatabaseOperationException {
+        if (invoice == null) {
+            log.error("Attempt to add null invoice to database.");
+            throw new IllegalArgumentException("Invoice cannot be null.");
+        }
+        Invoice savedInvoice = await(writer.save(invoice), "An error occurred during saving invoice.");
+        log.debug("Invoice with id {} has been successfully saved.", savedInvoice.getId());
+        return savedInvoice;
+    }
+
+    @Override
+    public List<BulkOperationResult> saveAll(List<Invoice> invoices) throws DatabaseOperationException {
+        if (invoices == null) {
+            log.error("Attempt to add null list of invoices to database.");
+            throw new IllegalArgumentException("Invoices cannot be null.");
+        }
+        List<Invoice> validInvoices = invoices.stream().filter(Objects::nonNull).collect(Collectors.toList());
+        Iterator<CompletableFuture<Invoice>> savedInvoices = writer.saveAll(validInvoices).iterator();
+        List<BulkOperationResult> results = new ArrayList<>(invoices.size());
+        for (Invoice invoice : invoices) {
+            if (invoice == null) {
+                results.add(BulkOperationResult.failed(null, "Invoice cannot be null."));
+                continue;
+            }
+            try {
+                results.add(BulkOperationResult.saved(await(savedInvoices.next(), "An error occurred during saving invoice.")));
+            } catch (DatabaseOperationException e) {
+                results.add(BulkOperationResult.failed(invoice.getId(), e.getMessage()));
+            }
+        }
+        log.debug("Bulk save of {} invoices has been completed.", invoices.size());
+        return results;
+    }
+
+    @Override
+    public void delete(Long id) throws DatabaseOperationException {
+        if (id == null) {
+            log.error("Attempt to delete invoice by null id.");
+            throw new IllegalArgumentException("Invoice id cannot be null.");
+        }
+        if (!await(writer.delete(id), "An error occurred during deleting invoice.")) {
+            log.error("Attempt to delete not existing invoice.");
+            throw new DatabaseOperationException(String.format("There is no invoice with id: %s", id));
+        }
+        log.debug("Invoice with id {} has been successfully deleted.", id);
+    }
+
+    @Override
+    public List<BulkOperationResult> deleteAllById(List<Long> ids) throws DatabaseOperationException {
+        if (ids == null) {
+            log.error("Attempt to delete invoices by null list of ids.");
+            throw new IllegalArgumentException("Invoice ids cannot be null.");
+        }
+        List<Long> validIds = ids.stream().filter(Objects::nonNull).collect(Collectors.toList());
+        Iterator<CompletableFuture<Boolean>> deletions = writer.deleteAllById(validIds).iterator();
+        List<BulkOperationResult> results = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            if (id == null) {
+                results.add(BulkOperationResult.failed(null, "Invoice id cannot be null."));
+                continue;
+            }
+            try {
+                if (await(deletions.next(), "An error occurred during deleting invoice.")) {
+                    results.add(BulkOperationResult.deleted(id));
+                } else {
+                    results.add(BulkOperationResult.failed(id, String.format("There is no invoice with id: %s", id)));
+                }
+            } catch (DatabaseOperationException e) {
+                results.add(BulkOperationResult.failed(id, e.getMessage()));
+            }
+        }
+        log.debug("Bulk delete of {} invoices has been completed.", ids.size());
+        return results;
+    }
+
+    @Override
+    public Optional<Invoice> getById(Long id) throws DatabaseOperationException {
+        if (id == null) {
+            log.error("Attempt to get invoice by null id.");
+            throw new IllegalArgumentException("Invoice id cannot be null.");
+        }
+        try {
+            Optional<Invoice> invoice = readInvoice(id);
+            if (invoice.isEmpty()) {
+                log.debug("Invoice with id {} is not found.", id);
+            }
+            return invoice;
+        } catch (IOException e) {
+            String message = "An error occurred during getting invoice by id.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    @Override
+    public Optional<Invoice> getByNumber(String number) throws DatabaseOperationException {
+        if (number == null) {
+            log.error("Attempt to get invoice by null number.");
+            throw new IllegalArgumentException("Invoice number cannot be null.");
+        }
+        try {
+            return getInvoices().stream()
+                .filter(invoice -> number.equals(invoice.getNumber()))
+                .findFirst();
+        } catch (IOException e) {
+            String message = "An error occurred during getting invoice by number.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    @Override
+    public Collection<Invoice> getByIssuedDateRange(LocalDate from, LocalDate to) throws DatabaseOperationException {
+        if (from == null || to == null) {
+            log.error("Attempt to get invoices by null issued date range.");
+            throw new IllegalArgumentException("Date range bounds cannot be null.");
+        }
+        return getByDateRange(Invoice::getIssuedDate, from, to, "An error occurred during getting invoices by issued date range.");
+    }
+
+    @Override
+    public Collection<Invoice> getByDueDateRange(LocalDate from, LocalDate to) throws DatabaseOperationException {
+        if (from == null || to == null) {
+            log.error("Attempt to get invoices by null due date range.");
+            throw new IllegalArgumentException("Date range bounds cannot be null.");
+        }
+        return getByDateRange(Invoice::getDueDate, from, to, "An error occurred during getting invoices by due date range.");
+    }
+
+    @Override
+    public List<Invoice> search(InvoiceQuery query) throws DatabaseOperationException {
+        if (query == null) {
+            log.error("Attempt to search invoices by null query.");
+            throw new IllegalArgumentException("Query cannot be null.");
+        }
+        // Walking the id index keeps only one batch of invoices in memory and returns them already ordered by id.
+        try (Stream<Invoice> invoices = streamAll()) {
+            return invoices
+                .filter(invoice -> InvoiceQueryMatcher.matches(query, invoice))
+                .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            String message = "An error occurred during searching invoices.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    @Override
+    public List<InvoiceTotals> getTotals(ReportGrouping grouping, LocalDate from, LocalDate to) throws DatabaseOperationException {
+        if (grouping == null) {
+            log.error("Attempt to get invoice totals with null grouping.");
+            throw new IllegalArgumentException("Report grouping cannot be null.");
+        }
+        return InvoiceTotalsCalculator.calculate(getByIssuedDateRange(from, to), grouping);
+    }
+
+    @Override
+    public Collection<Invoice> getAll() throws DatabaseOperationException {
+        try {
+            return getInvoices();
+        } catch (IOException e) {
+            String message = "An error occurred during getting all invoices.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    @Override
+    public List<Invoice> getPage(Long afterId, int limit) throws DatabaseOperationException {
+        if (limit <= 0) {
+            log.error("Attempt to get page of invoices with non-positive limit.");
+            throw new IllegalArgumentException("Page limit must be greater than zero.");
+        }
+        try {
+            List<Invoice> invoices = new ArrayList<>(limit);
+            Long lastId = afterId;
+            while (invoices.size() < limit) {
+                List<Long> ids = index.idsAfter(lastId, limit - invoices.size());
+                if (ids.isEmpty()) {
+                    break;
+                }
+                for (Long id : ids) {
+                    readInvoice(id).ifPresent(invoices::add);
+                }
+                lastId = ids.get(ids.size() - 1);
+            }
+            return invoices;
+        } catch (IOException e) {
+            String message = "An error occurred during getting page of invoices.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    @Override
+    public Stream<Invoice> streamAll() {
+        return StreamSupport.stream(new InvoiceSpliterator(), false);
+    }
+
+    @Override
+    public List<InvoiceSummary> getSummaries() throws DatabaseOperationException {
+        try (Stream<Invoice> invoices = streamAll()) {
+            return invoices
+                .map(InvoiceTotalsCalculator::summarize)
+                .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            String message = "An error occurred during getting invoice summaries.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    @Override
+    public void deleteAll() throws DatabaseOperationException {
+        await(writer.clear(), "An error occurred during deleting all invoices.");
+        log.debug("All invoices have been successfully deleted.");
+    }
+
+    @Override
+    public boolean exists(Long id) {
+        if (id == null) {
+            log.error("Attempt to check if invoice exists by null id.");
+            throw new IllegalArgumentException("Invoice id cannot be null.");
+        }
+        return index.contains(id);
+    }
+
+    @Override
+    public long count() {
+        return index.size();
+    }
+
+    public CompactionStats getCompactionStats() {
+        return compactor.getStats();
+    }
+
+    public void backup(Path directory) throws DatabaseOperationException {
+        if (directory == null) {
+            log.error("Attempt to backup database to null directory.");
+            throw new IllegalArgumentException("Backup directory cannot be null.");
+        }
+        try {
+            invoiceLog.backup(directory);
+        } catch (IOException e) {
+            String message = "An error occurred during backing up database.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    public CompactionStats compact() throws DatabaseOperationException {
+        try {
+            CompactionStats stats = compactor.compact();
+            if (checkpointEnabled) {
+                checkpointer.checkpoint();
+            }
+            return stats;
+        } catch (IOException e) {
+            String message = "An error occurred during compacting database.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        compactor.close();
+        writer.close();
+        checkpointer.close();
+        try {
+            if (checkpointEnabled) {
+                checkpointer.checkpointIfNeeded();
+            }
+        } finally {
+            invoiceLog.close();
+        }
+    }
+
+    private void importLegacyFile(Path file, ObjectMapper mapper) throws IOException {
+        if (invoiceLog.size() > 0 || !Files.exists(file)) {
+            log.debug("Skipping import of legacy invoice file {}.", file);
+            return;
+        }
+        new LegacyFileConverter(mapper).convert(file, invoiceLog);
+    }
+
+    private void replayLog() throws IOException {
+        Optional<LogCheckpoint> checkpoint = checkpointEnabled ? invoiceLog.readCheckpoint() : Optional.empty();
+        if (checkpoint.isPresent()) {
+            checkpoint.get().getLocations().forEach(index::put);
+            nextId.set(checkpoint.get().getNextId());
+            if (invoiceLog.scanAfter(checkpoint.get(), this::replayRecord)) {
+                log.debug("Replayed invoice log tail after checkpoint with {} live invoices.", index.size());
+                return;
+            }
+            log.info("Checkpoint of invoice log does not match its segments, replaying the whole log.");
+            index.clear();
+            nextId.set(0);
+        }
+        invoiceLog.scan(this::replayRecord);
+        log.debug("Replayed invoice log with {} live invoices.", index.size());
+    }
+
+    private void replayRecord(RecordLocation location, LogRecord record) {
+        if (record.isTombstone()) {
+            index.remove(record.getId());
+        } else {
+            index.put(record.getId(), location);
+        }
+        nextId.accumulateAndGet(record.getId(), Math::max);
+    }
+
+    private Optional<Invoice> readInvoice(Long id) throws IOException {
+        while (true) {
+            RecordLocation location = index.get(id);
+            if (location == null) {
+                return Optional.empty();
+            }
+            LogRecord record = invoiceLog.read(location);
+            if (record != null) {
+                return Optional.of(record.getInvoice());
+            }
+        }
+    }
+
+    private Collection<Invoice> getByDateRange(Function<Invoice, LocalDate> dateField, LocalDate from, LocalDate to, String message) throws DatabaseOperationException {
+        try {
+            return getInvoices().stream()
+                .filter(invoice -> dateField.apply(invoice) != null && !dateField.apply(invoice).isBefore(from) && !dateField.apply(invoice).isAfter(to))
+                .collect(Collectors.toList());
+        } catch (IOException e) {
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    private List<Invoice> getInvoices() throws IOException {
+        while (true) {
+            // Only records the index pointed at before the scan are returned, so writes made during the scan can neither
+            // hide an invoice nor return it twice. A snapshot entry the scan did not reach was moved by compaction.
+            Map<Long, RecordLocation> snapshot = index.snapshot();
+            Map<Long, List<Invoice>> invoicesBySegment = new ConcurrentHashMap<>();
+            AtomicLong found = new AtomicLong(0);
+            Optional<List<Long>> segments = invoiceLog.scanInParallel((location, record) -> {
+                if (!record.isTombstone() && location.equals(snapshot.get(record.getId()))) {
+                    invoicesBySegment.computeIfAbsent(location.getSegment(), segment -> new ArrayList<>()).add(record.getInvoice());
+                    found.incrementAndGet();
+                }
+            });
+            if (segments.isPresent() && found.get() == snapshot.size()) {
+                return segments.get().stream()
+                    .filter(invoicesBySegment::containsKey)
+                    .flatMap(segment -> invoicesBySegment.get(segment).stream())
+                    .collect(Collectors.toList());
+            }
+        }
+    }
+
+    private <T> T await(CompletableFuture<T> operation, String message) throws DatabaseOperationException {
+        try {
+            return operation.get(operationTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        } catch (ExecutionException e) {
+            log.error(message, e.getCause());
+            throw new DatabaseOperationException(message, e.getCause());
+        } catch (TimeoutException e) {
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    private class InvoiceSpliterator extends Spliterators.AbstractSpliterator<Invoice> {
+
+        private Iterator<Long> ids = Collections.emptyIterator();
+        private Long lastId;
+
+        InvoiceSpliterator() {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Invoice> action) {
+            try {
+                while (true) {
+                    if (!ids.hasNext()) {
+                        List<Long> batch = index.idsAfter(lastId, STREAM_BATCH_SIZE);
+                        if (batch.isEmpty()) {
+                            return false;
+                        }
+                        ids = batch.iterator();
+                    }
+                    lastId = ids.next();
+                    Optional<Invoice> invoice = readInvoice(lastId);
+                    if (invoice.isPresent()) {
+                        action.accept(invoice.get());
+                        return true;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
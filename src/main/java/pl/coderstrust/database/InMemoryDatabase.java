@@ -1,63 +1,213 @@
 package pl.coderstrust.database;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
-import org.springframework.stereotype.Repository;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import pl.coderstrust.configuration.InMemoryDatabaseProperties;
+import pl.coderstrust.database.file.LogRecord;
+import pl.coderstrust.database.file.LogRecordCodecs;
+import pl.coderstrust.database.memory.InvoiceEntryColumns;
+import pl.coderstrust.database.memory.InvoiceInterner;
+import pl.coderstrust.database.memory.LongPairIndex;
+import pl.coderstrust.database.memory.OffHeapInvoiceMap;
+import pl.coderstrust.database.memory.SnapshotStore;
+import pl.coderstrust.database.memory.WriteTracker;
+import pl.coderstrust.model.BulkOperationResult;
+import pl.coderstrust.model.Company;
 import pl.coderstrust.model.Invoice;
+import pl.coderstrust.model.InvoiceQuery;
+import pl.coderstrust.model.InvoiceSummary;
+import pl.coderstrust.model.InvoiceTotals;
+import pl.coderstrust.model.ReportGrouping;
 
 @Repository
 @ConditionalOnProperty(name = "pl.coderstrust.database", havingValue = "in-memory")
-public class InMemoryDatabase implements Database {
+public class InMemoryDatabase implements Database, Closeable {
+
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+    private static final long ID_INDEX_KEY = 0;
 
     private static Logger log = LoggerFactory.getLogger(InMemoryDatabase.class);
     private Map<Long, Invoice> database;
     private AtomicLong nextId = new AtomicLong(0);
+    // Indexes hold primitive (key, id) pairs only, so they do not pin a heap object per invoice when invoices are stored off-heap.
+    private LongPairIndex idIndex = new LongPairIndex(false);
+    private LongPairIndex numberIndex = new LongPairIndex(true);
+    private LongPairIndex issuedDateIndex = new LongPairIndex(false);
+    private LongPairIndex dueDateIndex = new LongPairIndex(false);
+    private LongPairIndex taxIdIndex = new LongPairIndex(true);
+    private boolean uniqueNumbers;
+    private boolean deduplicate;
+    private InvoiceInterner interner = new InvoiceInterner();
+    private SnapshotStore snapshotStore;
+    private WriteTracker<Long, Invoice> writeTracker = new WriteTracker<>();
+    private volatile WriteTracker.Versioned<List<Invoice>> allInvoices;
+    private boolean cacheAllInvoices;
+    private InvoiceEntryColumns entryColumns;
+
+    @Autowired
+    public InMemoryDatabase(InMemoryDatabaseProperties inMemoryDatabaseProperties, ObjectMapper mapper) throws IOException {
+        this(createStorage(inMemoryDatabaseProperties), inMemoryDatabaseProperties);
+        if (inMemoryDatabaseProperties.isPersistenceEnabled()) {
+            snapshotStore = new SnapshotStore(Paths.get(inMemoryDatabaseProperties.getPersistenceDirectory()), new LogRecordCodecs(mapper), database, nextId,
+                inMemoryDatabaseProperties.getSnapshotParts(), inMemoryDatabaseProperties.isSyncWrites());
+            snapshotStore.recover();
+            indexInvoices();
+            snapshotStore.start(inMemoryDatabaseProperties.getSnapshotInterval());
+        }
+    }
+
+    public InMemoryDatabase(InMemoryDatabaseProperties inMemoryDatabaseProperties) throws IOException {
+        this(inMemoryDatabaseProperties, new ObjectMapper());
+    }
 
     public InMemoryDatabase(Map<Long, Invoice> database) {
+        this(database, new InMemoryDatabaseProperties());
+    }
+
+    public InMemoryDatabase(Map<Long, Invoice> database, InMemoryDatabaseProperties inMemoryDatabaseProperties) {
         if (database == null) {
             log.error("Database is empty.");
             throw new IllegalArgumentException("Database is empty.");
         }
+        if (inMemoryDatabaseProperties == null) {
+            log.error("Attempt to initialize database with null properties.");
+            throw new IllegalArgumentException("Properties cannot be null.");
+        }
         this.database = database;
+        this.uniqueNumbers = inMemoryDatabaseProperties.isUniqueNumbers();
+        this.deduplicate = inMemoryDatabaseProperties.isDeduplicate() && !inMemoryDatabaseProperties.isOffHeap();
+        this.cacheAllInvoices = !inMemoryDatabaseProperties.isOffHeap();
+        if (inMemoryDatabaseProperties.isColumnarReports()) {
+            this.entryColumns = new InvoiceEntryColumns();
+        }
+        indexInvoices();
+    }
+
+    private static Map<Long, Invoice> createStorage(InMemoryDatabaseProperties inMemoryDatabaseProperties) {
+        if (inMemoryDatabaseProperties != null && inMemoryDatabaseProperties.isOffHeap()) {
+            log.info("Storing invoices off-heap in slabs of {} bytes.", inMemoryDatabaseProperties.getSlabSize());
+            return new OffHeapInvoiceMap(inMemoryDatabaseProperties.getSlabSize());
+        }
+        return new ConcurrentHashMap<>();
+    }
+
+    private void indexInvoices() {
+        if (deduplicate) {
+            database.replaceAll((id, invoice) -> interner.intern(invoice));
+        }
+        database.values().forEach(invoice -> {
+            idIndex.add(ID_INDEX_KEY, invoice.getId());
+            addToNumberIndex(invoice, false);
+            addToDateIndexes(invoice);
+            addToTaxIdIndex(invoice);
+            if (entryColumns != null) {
+                entryColumns.put(invoice);
+                entryColumns.applyPendingChanges();
+            }
+        });
     }
 
     @Override
-    public synchronized Invoice save(Invoice invoice) {
+    public Invoice save(Invoice invoice) throws DatabaseOperationException {
         if (invoice == null) {
             log.error("Attempt to save null invoice to database.");
             throw new IllegalArgumentException("Invoice cannot be null.");
         }
-        if (invoice.getId() == null || !database.containsKey(invoice.getId())) {
-            log.debug("Invoice has been successfully added to database.");
-            return insertInvoice(invoice);
+        long ticket = writeTracker.begin();
+        try {
+            return saveInvoice(invoice);
+        } catch (UncheckedIOException e) {
+            String message = "An error occurred during saving invoice.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        } finally {
+            writeTracker.end(ticket);
+            applyColumnChanges();
         }
-        log.debug("Invoice has been successfully updated.");
-        return updateInvoice(invoice);
     }
 
-    private Invoice insertInvoice(Invoice invoice) {
-        Long id = nextId.incrementAndGet();
-        Invoice insertedInvoice = Invoice.builder()
-            .id(id)
-            .number(invoice.getNumber())
-            .dueDate(invoice.getDueDate())
-            .issuedDate(invoice.getIssuedDate())
-            .buyer(invoice.getBuyer())
-            .seller(invoice.getSeller())
-            .entries(invoice.getEntries())
-            .build();
-        database.put(id, insertedInvoice);
+    @Override
+    public List<BulkOperationResult> saveAll(List<Invoice> invoices) {
+        if (invoices == null) {
+            log.error("Attempt to save null list of invoices to database.");
+            throw new IllegalArgumentException("Invoices cannot be null.");
+        }
+        List<BulkOperationResult> results = new ArrayList<>(invoices.size());
+        for (Invoice invoice : invoices) {
+            if (invoice == null) {
+                results.add(BulkOperationResult.failed(null, "Invoice cannot be null."));
+                continue;
+            }
+            long ticket = writeTracker.begin();
+            try {
+                results.add(BulkOperationResult.saved(saveInvoice(invoice)));
+            } catch (DatabaseOperationException e) {
+                results.add(BulkOperationResult.failed(invoice.getId(), e.getMessage()));
+            } catch (UncheckedIOException e) {
+                log.error("An error occurred during saving invoice.", e);
+                results.add(BulkOperationResult.failed(invoice.getId(), "An error occurred during saving invoice."));
+            } finally {
+                writeTracker.end(ticket);
+                applyColumnChanges();
+            }
+        }
+        log.debug("Bulk save of {} invoices has been completed.", invoices.size());
+        return results;
+    }
+
+    private Invoice saveInvoice(Invoice invoice) throws DatabaseOperationException {
+        if (invoice.getId() != null) {
+            Invoice updatedInvoice = copyInvoice(invoice, invoice.getId());
+            Invoice savedInvoice = database.computeIfPresent(updatedInvoice.getId(), (id, previousInvoice) -> reindex(previousInvoice, updatedInvoice));
+            if (savedInvoice != null) {
+                checkNumberIndexed(savedInvoice, updatedInvoice);
+                log.debug("Invoice has been successfully updated.");
+                return updatedInvoice;
+            }
+        }
+        Invoice insertedInvoice = insertInvoice(invoice);
+        log.debug("Invoice has been successfully added to database.");
         return insertedInvoice;
     }
 
-    private Invoice updateInvoice(Invoice invoice) {
-        Invoice updatedInvoice = Invoice.builder()
-            .id(invoice.getId())
+    private Invoice insertInvoice(Invoice invoice) throws DatabaseOperationException {
+        while (true) {
+            Invoice insertedInvoice = copyInvoice(invoice, nextId.incrementAndGet());
+            Invoice savedInvoice = database.compute(insertedInvoice.getId(), (id, existingInvoice) -> existingInvoice != null ? existingInvoice : reindex(null, insertedInvoice));
+            if (savedInvoice == null || savedInvoice == insertedInvoice) {
+                checkNumberIndexed(savedInvoice, insertedInvoice);
+                return insertedInvoice;
+            }
+        }
+    }
+
+    private Invoice copyInvoice(Invoice invoice, Long id) {
+        Invoice copiedInvoice = Invoice.builder()
+            .id(id)
             .number(invoice.getNumber())
             .dueDate(invoice.getDueDate())
             .issuedDate(invoice.getIssuedDate())
@@ -65,24 +215,170 @@ public class InMemoryDatabase implements Database {
             .seller(invoice.getSeller())
             .entries(invoice.getEntries())
             .build();
-        database.put(invoice.getId(), updatedInvoice);
-        return updatedInvoice;
+        return deduplicate ? interner.intern(copiedInvoice) : copiedInvoice;
+    }
+
+    private Invoice reindex(Invoice previousInvoice, Invoice invoice) {
+        if (!addToNumberIndex(invoice, uniqueNumbers)) {
+            return previousInvoice;
+        }
+        try {
+            journal(LogRecord.put(invoice));
+        } catch (UncheckedIOException e) {
+            removeFromNumberIndex(invoice, previousInvoice);
+            throw e;
+        }
+        if (previousInvoice != null) {
+            removeFromIndexes(previousInvoice, invoice);
+        }
+        idIndex.add(ID_INDEX_KEY, invoice.getId());
+        addToDateIndexes(invoice);
+        addToTaxIdIndex(invoice);
+        if (entryColumns != null) {
+            entryColumns.put(invoice);
+        }
+        writeTracker.recordPrevious(invoice.getId(), previousInvoice);
+        return invoice;
+    }
+
+    private void checkNumberIndexed(Invoice savedInvoice, Invoice invoice) throws DatabaseOperationException {
+        if (savedInvoice != invoice) {
+            log.error("Attempt to save invoice with already existing number.");
+            throw new DatabaseOperationException(String.format("There is already invoice with number: %s in database.", invoice.getNumber()));
+        }
+    }
+
+    private boolean addToNumberIndex(Invoice invoice, boolean unique) {
+        if (invoice.getNumber() == null) {
+            return true;
+        }
+        long key = keyOf(invoice.getNumber());
+        if (!unique) {
+            numberIndex.add(key, invoice.getId());
+            return true;
+        }
+        if (numberIndex.addUnlessMajorTaken(key, invoice.getId())) {
+            return true;
+        }
+        // Numbers are indexed by their hash, so the taken key may belong to an invoice with a different number.
+        boolean taken = numberIndex.minors(key)
+            .filter(id -> id != invoice.getId())
+            .mapToObj(database::get)
+            .anyMatch(indexedInvoice -> indexedInvoice == null || invoice.getNumber().equals(indexedInvoice.getNumber()));
+        if (!taken) {
+            numberIndex.add(key, invoice.getId());
+        }
+        return !taken;
+    }
+
+    private void addToDateIndexes(Invoice invoice) {
+        if (invoice.getIssuedDate() != null) {
+            issuedDateIndex.add(invoice.getIssuedDate().toEpochDay(), invoice.getId());
+        }
+        if (invoice.getDueDate() != null) {
+            dueDateIndex.add(invoice.getDueDate().toEpochDay(), invoice.getId());
+        }
+    }
+
+    private void addToTaxIdIndex(Invoice invoice) {
+        taxIdsOf(invoice).forEach(taxId -> taxIdIndex.add(keyOf(taxId), invoice.getId()));
+    }
+
+    private void removeFromIndexes(Invoice invoice, Invoice replacement) {
+        removeFromNumberIndex(invoice, replacement);
+        if (invoice.getIssuedDate() != null) {
+            issuedDateIndex.remove(invoice.getIssuedDate().toEpochDay(), invoice.getId());
+        }
+        if (invoice.getDueDate() != null) {
+            dueDateIndex.remove(invoice.getDueDate().toEpochDay(), invoice.getId());
+        }
+        taxIdsOf(invoice).forEach(taxId -> taxIdIndex.remove(keyOf(taxId), invoice.getId()));
+    }
+
+    private static Stream<String> taxIdsOf(Invoice invoice) {
+        return Stream.of(invoice.getBuyer(), invoice.getSeller())
+            .filter(company -> company != null && company.getTaxId() != null)
+            .map(Company::getTaxId)
+            .distinct();
+    }
+
+    private void removeFromNumberIndex(Invoice invoice, Invoice replacement) {
+        if (invoice.getNumber() != null && (replacement == null || !invoice.getNumber().equals(replacement.getNumber()))) {
+            numberIndex.remove(keyOf(invoice.getNumber()), invoice.getId());
+        }
+    }
+
+    private static long keyOf(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private void applyColumnChanges() {
+        // Column changes are only recorded inside the atomic map operations and get applied once they have returned.
+        if (entryColumns != null) {
+            entryColumns.applyPendingChanges();
+        }
+    }
+
+    private void journal(LogRecord record) {
+        if (snapshotStore != null) {
+            snapshotStore.append(record);
+        }
     }
 
     @Override
-    public synchronized void delete(Long id) throws DatabaseOperationException {
+    public void delete(Long id) throws DatabaseOperationException {
         if (id == null) {
             log.error("Attempt to delete invoice by null id.");
             throw new IllegalArgumentException("Invoice id cannot be null.");
         }
-        if (!database.containsKey(id)) {
+        Invoice deletedInvoice;
+        try {
+            deletedInvoice = remove(id);
+        } catch (UncheckedIOException e) {
+            String message = "An error occurred during deleting invoice.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+        if (deletedInvoice == null) {
             log.error("Attempt to delete not existing invoice.");
             throw new DatabaseOperationException(String.format("There is no invoice with id: %s in database.", id));
         }
-        database.remove(id);
         log.debug("Invoice has been successfully deleted.");
     }
 
+    @Override
+    public List<BulkOperationResult> deleteAllById(List<Long> ids) {
+        if (ids == null) {
+            log.error("Attempt to delete invoices by null list of ids.");
+            throw new IllegalArgumentException("Invoice ids cannot be null.");
+        }
+        List<BulkOperationResult> results = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            if (id == null) {
+                results.add(BulkOperationResult.failed(null, "Invoice id cannot be null."));
+                continue;
+            }
+            try {
+                Invoice deletedInvoice = remove(id);
+                if (deletedInvoice == null) {
+                    results.add(BulkOperationResult.failed(id, String.format("There is no invoice with id: %s in database.", id)));
+                    continue;
+                }
+                results.add(BulkOperationResult.deleted(id));
+            } catch (UncheckedIOException e) {
+                log.error("An error occurred during deleting invoice.", e);
+                results.add(BulkOperationResult.failed(id, "An error occurred during deleting invoice."));
+            }
+        }
+        log.debug("Bulk delete of {} invoices has been completed.", ids.size());
+        return results;
+    }
+
     @Override
     public Optional<Invoice> getById(Long id) {
         if (id == null) {
@@ -98,21 +394,161 @@ public class InMemoryDatabase implements Database {
             log.error("Attempt to get invoice by null number.");
             throw new IllegalArgumentException("Invoice number cannot be null.");
         }
-        return database.values()
-            .stream()
-            .filter(invoice -> invoice.getNumber().equals(number))
+        return numberIndex.minors(keyOf(number))
+            .mapToObj(database::get)
+            .filter(invoice -> invoice != null && number.equals(invoice.getNumber()))
             .findFirst();
     }
 
+    @Override
+    public Collection<Invoice> getByIssuedDateRange(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            log.error("Attempt to get invoices by null issued date range.");
+            throw new IllegalArgumentException("Date range bounds cannot be null.");
+        }
+        return getByDateRange(issuedDateIndex, Invoice::getIssuedDate, from, to);
+    }
+
+    @Override
+    public Collection<Invoice> getByDueDateRange(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            log.error("Attempt to get invoices by null due date range.");
+            throw new IllegalArgumentException("Date range bounds cannot be null.");
+        }
+        return getByDateRange(dueDateIndex, Invoice::getDueDate, from, to);
+    }
+
+    private Collection<Invoice> getByDateRange(LongPairIndex index, Function<Invoice, LocalDate> dateField, LocalDate from, LocalDate to) {
+        return index.minors(from.toEpochDay(), Long.MIN_VALUE, to.toEpochDay())
+            .mapToObj(database::get)
+            .filter(invoice -> invoice != null && dateField.apply(invoice) != null && !dateField.apply(invoice).isBefore(from) && !dateField.apply(invoice).isAfter(to))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Invoice> search(InvoiceQuery query) {
+        if (query == null) {
+            log.error("Attempt to search invoices by null query.");
+            throw new IllegalArgumentException("Query cannot be null.");
+        }
+        return candidateIds(query)
+            .mapToObj(database::get)
+            .filter(invoice -> InvoiceQueryMatcher.matches(query, invoice))
+            .sorted(Comparator.comparing(Invoice::getId))
+            .collect(Collectors.toList());
+    }
+
+    private LongStream candidateIds(InvoiceQuery query) {
+        // Only one index narrows the scan, the remaining criteria are checked on the invoices it yields.
+        String taxId = query.getBuyerTaxId() != null ? query.getBuyerTaxId() : query.getSellerTaxId();
+        if (taxId != null) {
+            return taxIdIndex.minors(keyOf(taxId));
+        }
+        if (query.getIssuedFrom() != null || query.getIssuedTo() != null) {
+            return idsInDateRange(issuedDateIndex, query.getIssuedFrom(), query.getIssuedTo());
+        }
+        if (query.getDueFrom() != null || query.getDueTo() != null) {
+            return idsInDateRange(dueDateIndex, query.getDueFrom(), query.getDueTo());
+        }
+        return idIndex.minors(ID_INDEX_KEY);
+    }
+
+    private LongStream idsInDateRange(LongPairIndex index, LocalDate from, LocalDate to) {
+        return index.minors(from == null ? Long.MIN_VALUE : from.toEpochDay(), Long.MIN_VALUE, to == null ? Long.MAX_VALUE : to.toEpochDay());
+    }
+
+    @Override
+    public List<InvoiceTotals> getTotals(ReportGrouping grouping, LocalDate from, LocalDate to) {
+        if (grouping == null) {
+            log.error("Attempt to get invoice totals with null grouping.");
+            throw new IllegalArgumentException("Report grouping cannot be null.");
+        }
+        if (from == null || to == null) {
+            log.error("Attempt to get invoice totals by null issued date range.");
+            throw new IllegalArgumentException("Date range bounds cannot be null.");
+        }
+        if (entryColumns == null) {
+            return InvoiceTotalsCalculator.calculate(getByIssuedDateRange(from, to), grouping);
+        }
+        return entryColumns.totals(grouping, from, to);
+    }
+
     @Override
     public Collection<Invoice> getAll() {
-        return database.values();
+        WriteTracker.Versioned<List<Invoice>> invoices = allInvoices;
+        if (invoices != null && writeTracker.isUnchangedSince(invoices.getVersion())) {
+            return invoices.getValue();
+        }
+        // The point-in-time copy is taken alongside writers and kept only if no write started while it was being taken.
+        invoices = writeTracker.snapshot(database, Invoice::getId);
+        if (cacheAllInvoices) {
+            allInvoices = invoices;
+        }
+        return invoices.getValue();
+    }
+
+    @Override
+    public Stream<Invoice> streamAll() {
+        return idIndex.minors(ID_INDEX_KEY).mapToObj(database::get).filter(Objects::nonNull);
     }
 
     @Override
-    public synchronized void deleteAll() {
+    public List<InvoiceSummary> getSummaries() {
+        // Summaries are derived from each stored invoice in turn, so no per-invoice object is kept for them in either storage mode.
+        return streamAll()
+            .map(InvoiceTotalsCalculator::summarize)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Invoice> getPage(Long afterId, int limit) {
+        if (limit <= 0) {
+            log.error("Attempt to get page of invoices with non-positive limit.");
+            throw new IllegalArgumentException("Page limit must be greater than zero.");
+        }
+        if (afterId != null && afterId == Long.MAX_VALUE) {
+            return new ArrayList<>();
+        }
+        return idIndex.minors(ID_INDEX_KEY, afterId == null ? Long.MIN_VALUE : afterId + 1, ID_INDEX_KEY)
+            .mapToObj(database::get)
+            .filter(Objects::nonNull)
+            .limit(limit)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public void deleteAll() throws DatabaseOperationException {
+        try {
+            new ArrayList<>(database.keySet()).forEach(this::remove);
+        } catch (UncheckedIOException e) {
+            String message = "An error occurred during deleting all invoices.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
         log.debug("All invoices have been successfully deleted.");
-        database.clear();
+    }
+
+    private Invoice remove(Long id) {
+        AtomicReference<Invoice> deletedInvoice = new AtomicReference<>();
+        long ticket = writeTracker.begin();
+        try {
+            database.computeIfPresent(id, (key, invoice) -> {
+                journal(LogRecord.delete(key));
+                // Indexes are cleaned up before the entry is dropped, so a number is never left taken by a deleted invoice.
+                removeFromIndexes(invoice, null);
+                idIndex.remove(ID_INDEX_KEY, key);
+                if (entryColumns != null) {
+                    entryColumns.remove(key);
+                }
+                deletedInvoice.set(invoice);
+                writeTracker.recordPrevious(key, invoice);
+                return null;
+            });
+        } finally {
+            writeTracker.end(ticket);
+            applyColumnChanges();
+        }
+        return deletedInvoice.get();
     }
 
     @Override
@@ -128,4 +564,29 @@ public class InMemoryDatabase implements Database {
     public long count() {
         return database.size();
     }
+
+    public void snapshot() throws DatabaseOperationException {
+        if (snapshotStore == null) {
+            log.error("Attempt to snapshot database without persistence.");
+            throw new IllegalStateException("Persistence of in-memory database is disabled.");
+        }
+        try {
+            snapshotStore.snapshot();
+        } catch (IOException e) {
+            String message = "An error occurred during snapshotting database.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (snapshotStore != null) {
+            try {
+                snapshotStore.snapshotIfNeeded();
+            } finally {
+                snapshotStore.close();
+            }
+        }
+    }
 }
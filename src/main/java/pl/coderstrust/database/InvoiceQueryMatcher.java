@@ -0,0 +1,60 @@
+package pl.coderstrust.database;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Objects;
+import pl.coderstrust.model.Company;
+import pl.coderstrust.model.Invoice;
+import pl.coderstrust.model.InvoiceEntry;
+import pl.coderstrust.model.InvoiceQuery;
+
+public final class InvoiceQueryMatcher {
+
+    private InvoiceQueryMatcher() {
+    }
+
+    public static boolean matches(InvoiceQuery query, Invoice invoice) {
+        if (query == null) {
+            throw new IllegalArgumentException("Query cannot be null.");
+        }
+        if (invoice == null) {
+            return false;
+        }
+        return matchesTaxId(query.getBuyerTaxId(), invoice.getBuyer())
+            && matchesTaxId(query.getSellerTaxId(), invoice.getSeller())
+            && matchesDate(query.getIssuedFrom(), query.getIssuedTo(), invoice.getIssuedDate())
+            && matchesDate(query.getDueFrom(), query.getDueTo(), invoice.getDueDate())
+            && (query.getNumberPrefix() == null || invoice.getNumber() != null && invoice.getNumber().startsWith(query.getNumberPrefix()))
+            && matchesGross(query, invoice);
+    }
+
+    public static boolean matchesGross(InvoiceQuery query, Invoice invoice) {
+        if (query.getMinGross() == null && query.getMaxGross() == null) {
+            return true;
+        }
+        BigDecimal gross = grossValue(invoice);
+        return (query.getMinGross() == null || gross.compareTo(query.getMinGross()) >= 0)
+            && (query.getMaxGross() == null || gross.compareTo(query.getMaxGross()) <= 0);
+    }
+
+    public static BigDecimal grossValue(Invoice invoice) {
+        if (invoice.getEntries() == null) {
+            return BigDecimal.ZERO;
+        }
+        return invoice.getEntries().stream()
+            .map(InvoiceEntry::getGrossValue)
+            .filter(Objects::nonNull)
+            .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private static boolean matchesTaxId(String taxId, Company company) {
+        return taxId == null || company != null && taxId.equals(company.getTaxId());
+    }
+
+    private static boolean matchesDate(LocalDate from, LocalDate to, LocalDate date) {
+        if (from == null && to == null) {
+            return true;
+        }
+        return date != null && (from == null || !date.isBefore(from)) && (to == null || !date.isAfter(to));
+    }
+}
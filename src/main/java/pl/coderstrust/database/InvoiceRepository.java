@@ -1,13 +1,31 @@
 package pl.coderstrust.database;
 
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 import pl.coderstrust.database.hibernate.Invoice;
+import pl.coderstrust.database.hibernate.InvoiceSummaryView;
 
 @ConditionalOnProperty(name = "pl.coderstrust.database", havingValue = "hibernate")
-public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
+public interface InvoiceRepository extends JpaRepository<Invoice, Long>, JpaSpecificationExecutor<Invoice> {
 
     Optional<Invoice> getFirstByNumber(String number);
+
+    List<Invoice> findAllByIssuedDateBetween(LocalDate from, LocalDate to);
+
+    List<Invoice> findAllByDueDateBetween(LocalDate from, LocalDate to);
+
+    List<Invoice> findAllByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    @Query("SELECT i.id AS id, i.number AS number, i.issuedDate AS issuedDate, i.dueDate AS dueDate, b.name AS buyerName, s.name AS sellerName,"
+        + " COALESCE(SUM(e.netValue), 0) AS netValue, COALESCE(SUM(e.grossValue), 0) AS grossValue"
+        + " FROM Invoice i LEFT JOIN i.buyer b LEFT JOIN i.seller s LEFT JOIN i.entries e"
+        + " GROUP BY i.id, i.number, i.issuedDate, i.dueDate, b.name, s.name ORDER BY i.id")
+    List<InvoiceSummaryView> findAllSummaries();
 }
 
@@ -0,0 +1,122 @@
+package pl.coderstrust.database;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import pl.coderstrust.model.Company;
+import pl.coderstrust.model.Invoice;
+import pl.coderstrust.model.InvoiceEntry;
+import pl.coderstrust.model.InvoiceSummary;
+import pl.coderstrust.model.InvoiceTotals;
+import pl.coderstrust.model.ReportGrouping;
+import pl.coderstrust.model.Vat;
+
+public final class InvoiceTotalsCalculator {
+
+    public static final int AMOUNT_SCALE = 2;
+
+    private InvoiceTotalsCalculator() {
+    }
+
+    public static List<InvoiceTotals> calculate(Collection<Invoice> invoices, ReportGrouping grouping) {
+        if (invoices == null) {
+            throw new IllegalArgumentException("Invoices cannot be null.");
+        }
+        if (grouping == null) {
+            throw new IllegalArgumentException("Report grouping cannot be null.");
+        }
+        Map<String, InvoiceTotals> totals = new HashMap<>();
+        for (Invoice invoice : invoices) {
+            if (invoice.getEntries() == null) {
+                continue;
+            }
+            for (InvoiceEntry entry : invoice.getEntries()) {
+                String group = group(invoice, entry, grouping);
+                if (group != null) {
+                    totals.merge(group, totals(group, entry), InvoiceTotalsCalculator::add);
+                }
+            }
+        }
+        return totals.values().stream()
+            .sorted(order(grouping))
+            .collect(Collectors.toList());
+    }
+
+    public static InvoiceSummary summarize(Invoice invoice) {
+        if (invoice == null) {
+            throw new IllegalArgumentException("Invoice cannot be null.");
+        }
+        long netValue = 0;
+        long grossValue = 0;
+        if (invoice.getEntries() != null) {
+            for (InvoiceEntry entry : invoice.getEntries()) {
+                netValue += toMinorUnits(entry.getNetValue());
+                grossValue += toMinorUnits(entry.getGrossValue());
+            }
+        }
+        return InvoiceSummary.builder()
+            .id(invoice.getId())
+            .number(invoice.getNumber())
+            .issuedDate(invoice.getIssuedDate())
+            .dueDate(invoice.getDueDate())
+            .buyerName(companyName(invoice.getBuyer()))
+            .sellerName(companyName(invoice.getSeller()))
+            .netValue(BigDecimal.valueOf(netValue, AMOUNT_SCALE))
+            .grossValue(BigDecimal.valueOf(grossValue, AMOUNT_SCALE))
+            .build();
+    }
+
+    public static Comparator<InvoiceTotals> order(ReportGrouping grouping) {
+        if (grouping == ReportGrouping.VAT_RATE) {
+            return Comparator.comparing(totals -> Vat.valueOf(totals.getGroup()));
+        }
+        return Comparator.comparing(InvoiceTotals::getGroup);
+    }
+
+    public static long toMinorUnits(BigDecimal amount) {
+        return amount == null ? 0 : amount.setScale(AMOUNT_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static String companyGroup(Company company) {
+        return company == null ? null : company.getTaxId();
+    }
+
+    private static String companyName(Company company) {
+        return company == null ? null : company.getName();
+    }
+
+    private static String group(Invoice invoice, InvoiceEntry entry, ReportGrouping grouping) {
+        if (grouping == ReportGrouping.VAT_RATE) {
+            return entry.getVatRate() == null ? null : entry.getVatRate().name();
+        }
+        if (grouping == ReportGrouping.MONTH) {
+            return invoice.getIssuedDate() == null ? null : YearMonth.from(invoice.getIssuedDate()).toString();
+        }
+        return companyGroup(grouping == ReportGrouping.SELLER ? invoice.getSeller() : invoice.getBuyer());
+    }
+
+    private static InvoiceTotals totals(String group, InvoiceEntry entry) {
+        return InvoiceTotals.builder()
+            .group(group)
+            .entries(1)
+            .quantity(entry.getQuantity() == null ? 0 : entry.getQuantity())
+            .netValue(BigDecimal.valueOf(toMinorUnits(entry.getNetValue()), AMOUNT_SCALE))
+            .grossValue(BigDecimal.valueOf(toMinorUnits(entry.getGrossValue()), AMOUNT_SCALE))
+            .build();
+    }
+
+    private static InvoiceTotals add(InvoiceTotals totals, InvoiceTotals other) {
+        return totals.toBuilder()
+            .entries(totals.getEntries() + other.getEntries())
+            .quantity(totals.getQuantity() + other.getQuantity())
+            .netValue(totals.getNetValue().add(other.getNetValue()))
+            .grossValue(totals.getGrossValue().add(other.getGrossValue()))
+            .build();
+    }
+}
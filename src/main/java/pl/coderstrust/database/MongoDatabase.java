@@ -1,22 +1,44 @@
 package pl.coderstrust.database;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.data.util.StreamUtils;
 import org.springframework.stereotype.Repository;
 import pl.coderstrust.database.mongo.MongoModelMapper;
+import pl.coderstrust.model.BulkOperationResult;
 import pl.coderstrust.model.Invoice;
+import pl.coderstrust.model.InvoiceQuery;
+import pl.coderstrust.model.InvoiceSummary;
+import pl.coderstrust.model.InvoiceTotals;
+import pl.coderstrust.model.ReportGrouping;
 
 @Repository
 @ConditionalOnProperty(name = "pl.coderstrust.database", havingValue = "mongo")
 public class MongoDatabase implements Database {
+    private static final int STREAM_BATCH_SIZE = 500;
+
     private final MongoTemplate mongoTemplate;
     private final MongoModelMapper modelMapper;
     private AtomicLong lastId;
@@ -69,6 +91,57 @@ public class MongoDatabase implements Database {
         }
     }
 
+    @Override
+    public List<BulkOperationResult> saveAll(List<Invoice> invoices) throws DatabaseOperationException {
+        if (invoices == null) {
+            log.error("Attempt to add null list of invoices to database.");
+            throw new IllegalArgumentException("Invoices cannot be null.");
+        }
+        try {
+            List<Invoice> savedInvoices = new ArrayList<>(invoices.size());
+            BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, pl.coderstrust.database.mongo.Invoice.class);
+            for (Invoice invoice : invoices) {
+                if (invoice != null) {
+                    Invoice savedInvoice = invoice.toBuilder().id(invoice.getId() == null ? lastId.incrementAndGet() : invoice.getId()).build();
+                    lastId.accumulateAndGet(savedInvoice.getId(), Math::max);
+                    operations.upsert(Query.query(Criteria.where("id").is(savedInvoice.getId())), new Update()
+                        .set("number", savedInvoice.getNumber())
+                        .set("issuedDate", savedInvoice.getIssuedDate())
+                        .set("dueDate", savedInvoice.getDueDate())
+                        .set("seller", savedInvoice.getSeller())
+                        .set("buyer", savedInvoice.getBuyer())
+                        .set("entries", savedInvoice.getEntries()));
+                    savedInvoices.add(savedInvoice);
+                }
+            }
+            Map<Integer, String> failures = new HashMap<>();
+            if (!savedInvoices.isEmpty()) {
+                try {
+                    operations.execute();
+                } catch (BulkOperationException e) {
+                    e.getErrors().forEach(error -> failures.put(error.getIndex(), error.getMessage()));
+                }
+            }
+            List<BulkOperationResult> results = new ArrayList<>(invoices.size());
+            int operation = 0;
+            for (Invoice invoice : invoices) {
+                if (invoice == null) {
+                    results.add(BulkOperationResult.failed(null, "Invoice cannot be null."));
+                } else if (failures.containsKey(operation)) {
+                    results.add(BulkOperationResult.failed(invoice.getId(), failures.get(operation++)));
+                } else {
+                    results.add(BulkOperationResult.saved(savedInvoices.get(operation++)));
+                }
+            }
+            log.debug("Bulk save of {} invoices has been completed.", invoices.size());
+            return results;
+        } catch (Exception e) {
+            String message = "An error occurred during saving invoices.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
     @Override
     public void delete(Long id) throws DatabaseOperationException {
         if (id == null) {
@@ -88,6 +161,40 @@ public class MongoDatabase implements Database {
         }
     }
 
+    @Override
+    public List<BulkOperationResult> deleteAllById(List<Long> ids) throws DatabaseOperationException {
+        if (ids == null) {
+            log.error("Attempt to delete invoices by null list of ids.");
+            throw new IllegalArgumentException("Invoice ids cannot be null.");
+        }
+        try {
+            Query existingInvoices = Query.query(Criteria.where("id").in(ids.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList())));
+            existingInvoices.fields().include("id");
+            Set<Long> existingIds = mongoTemplate.find(existingInvoices, pl.coderstrust.database.mongo.Invoice.class).stream()
+                .map(pl.coderstrust.database.mongo.Invoice::getId)
+                .collect(Collectors.toSet());
+            if (!existingIds.isEmpty()) {
+                mongoTemplate.remove(Query.query(Criteria.where("id").in(new ArrayList<>(existingIds))), pl.coderstrust.database.mongo.Invoice.class);
+            }
+            List<BulkOperationResult> results = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                if (id == null) {
+                    results.add(BulkOperationResult.failed(null, "Invoice id cannot be null."));
+                } else if (existingIds.remove(id)) {
+                    results.add(BulkOperationResult.deleted(id));
+                } else {
+                    results.add(BulkOperationResult.failed(id, String.format("There is no invoice with id: %s", id)));
+                }
+            }
+            log.debug("Bulk delete of {} invoices has been completed.", ids.size());
+            return results;
+        } catch (Exception e) {
+            String message = "An error occurred during deleting invoices.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
     @Override
     public Optional<Invoice> getById(Long id) throws DatabaseOperationException {
         if (id == null) {
@@ -128,6 +235,94 @@ public class MongoDatabase implements Database {
         }
     }
 
+    @Override
+    public Collection<Invoice> getByIssuedDateRange(LocalDate from, LocalDate to) throws DatabaseOperationException {
+        if (from == null || to == null) {
+            log.error("Attempt to get invoices by null issued date range.");
+            throw new IllegalArgumentException("Date range bounds cannot be null.");
+        }
+        try {
+            return modelMapper.mapToInvoices(mongoTemplate.find(Query.query(Criteria.where("issuedDate").gte(from).lte(to)), pl.coderstrust.database.mongo.Invoice.class));
+        } catch (Exception e) {
+            String message = "An error occurred during getting invoices by issued date range.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    @Override
+    public Collection<Invoice> getByDueDateRange(LocalDate from, LocalDate to) throws DatabaseOperationException {
+        if (from == null || to == null) {
+            log.error("Attempt to get invoices by null due date range.");
+            throw new IllegalArgumentException("Date range bounds cannot be null.");
+        }
+        try {
+            return modelMapper.mapToInvoices(mongoTemplate.find(Query.query(Criteria.where("dueDate").gte(from).lte(to)), pl.coderstrust.database.mongo.Invoice.class));
+        } catch (Exception e) {
+            String message = "An error occurred during getting invoices by due date range.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    @Override
+    public List<Invoice> search(InvoiceQuery query) throws DatabaseOperationException {
+        if (query == null) {
+            log.error("Attempt to search invoices by null query.");
+            throw new IllegalArgumentException("Query cannot be null.");
+        }
+        try {
+            // Amounts are stored as strings, so gross bounds cannot be compared by Mongo and are checked on the returned invoices.
+            return mongoTemplate.find(toMongoQuery(query), pl.coderstrust.database.mongo.Invoice.class).stream()
+                .map(modelMapper::mapToInvoice)
+                .filter(invoice -> InvoiceQueryMatcher.matchesGross(query, invoice))
+                .collect(Collectors.toList());
+        } catch (Exception e) {
+            String message = "An error occurred during searching invoices.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    private Query toMongoQuery(InvoiceQuery query) {
+        Query mongoQuery = new Query().with(Sort.by(Sort.Direction.ASC, "id"));
+        if (query.getBuyerTaxId() != null) {
+            mongoQuery.addCriteria(Criteria.where("buyer.taxId").is(query.getBuyerTaxId()));
+        }
+        if (query.getSellerTaxId() != null) {
+            mongoQuery.addCriteria(Criteria.where("seller.taxId").is(query.getSellerTaxId()));
+        }
+        addDateRange(mongoQuery, "issuedDate", query.getIssuedFrom(), query.getIssuedTo());
+        addDateRange(mongoQuery, "dueDate", query.getDueFrom(), query.getDueTo());
+        if (query.getNumberPrefix() != null) {
+            mongoQuery.addCriteria(Criteria.where("number").regex("^" + Pattern.quote(query.getNumberPrefix())));
+        }
+        return mongoQuery;
+    }
+
+    private void addDateRange(Query mongoQuery, String field, LocalDate from, LocalDate to) {
+        if (from == null && to == null) {
+            return;
+        }
+        Criteria range = Criteria.where(field);
+        if (from != null) {
+            range.gte(from);
+        }
+        if (to != null) {
+            range.lte(to);
+        }
+        mongoQuery.addCriteria(range);
+    }
+
+    @Override
+    public List<InvoiceTotals> getTotals(ReportGrouping grouping, LocalDate from, LocalDate to) throws DatabaseOperationException {
+        if (grouping == null) {
+            log.error("Attempt to get invoice totals with null grouping.");
+            throw new IllegalArgumentException("Report grouping cannot be null.");
+        }
+        return InvoiceTotalsCalculator.calculate(getByIssuedDateRange(from, to), grouping);
+    }
+
     @Override
     public Collection<Invoice> getAll() throws DatabaseOperationException {
         try {
@@ -139,6 +334,61 @@ public class MongoDatabase implements Database {
         }
     }
 
+    @Override
+    public List<Invoice> getPage(Long afterId, int limit) throws DatabaseOperationException {
+        if (limit <= 0) {
+            log.error("Attempt to get page of invoices with non-positive limit.");
+            throw new IllegalArgumentException("Page limit must be greater than zero.");
+        }
+        try {
+            Query query = afterId == null ? new Query() : Query.query(Criteria.where("id").gt(afterId));
+            query.with(Sort.by(Sort.Direction.ASC, "id")).limit(limit);
+            return new ArrayList<>(modelMapper.mapToInvoices(mongoTemplate.find(query, pl.coderstrust.database.mongo.Invoice.class)));
+        } catch (Exception e) {
+            String message = "An error occurred during getting page of invoices.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    @Override
+    public Stream<Invoice> streamAll() throws DatabaseOperationException {
+        try {
+            Query query = new Query().with(Sort.by(Sort.Direction.ASC, "id")).cursorBatchSize(STREAM_BATCH_SIZE);
+            CloseableIterator<pl.coderstrust.database.mongo.Invoice> cursor = mongoTemplate.stream(query, pl.coderstrust.database.mongo.Invoice.class);
+            return StreamUtils.createStreamFromIterator(cursor).map(modelMapper::mapToInvoice);
+        } catch (Exception e) {
+            String message = "An error occurred during streaming all invoices.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
+    @Override
+    public List<InvoiceSummary> getSummaries() throws DatabaseOperationException {
+        try {
+            Query query = new Query().with(Sort.by(Sort.Direction.ASC, "id"));
+            query.fields()
+                .include("id")
+                .include("number")
+                .include("issuedDate")
+                .include("dueDate")
+                .include("buyer.name")
+                .include("seller.name")
+                .include("entries.netValue")
+                .include("entries.grossValue");
+            // Amounts are stored as strings, so only the needed fields are fetched and the totals are summed here.
+            return mongoTemplate.find(query, pl.coderstrust.database.mongo.Invoice.class).stream()
+                .map(modelMapper::mapToInvoice)
+                .map(InvoiceTotalsCalculator::summarize)
+                .collect(Collectors.toList());
+        } catch (Exception e) {
+            String message = "An error occurred during getting invoice summaries.";
+            log.error(message, e);
+            throw new DatabaseOperationException(message, e);
+        }
+    }
+
     @Override
     public void deleteAll() throws DatabaseOperationException {
         try {
@@ -2,48 +2,83 @@ package pl.coderstrust.database;
 
 import static pl.coderstrust.database.jdbc.SqlQueries.COUNT_INVOICES;
 import static pl.coderstrust.database.jdbc.SqlQueries.DELETE_ALL_DATA;
+import static pl.coderstrust.database.jdbc.SqlQueries.DELETE_INVOICES_BY_IDS;
 import static pl.coderstrust.database.jdbc.SqlQueries.DELETE_INVOICE_BY_ID;
 import static pl.coderstrust.database.jdbc.SqlQueries.EXISTS_COMPANY;
 import static pl.coderstrust.database.jdbc.SqlQueries.EXISTS_INVOICE;
 import static pl.coderstrust.database.jdbc.SqlQueries.EXISTS_INVOICE_ENTRY;
 import static pl.coderstrust.database.jdbc.SqlQueries.GET_ALL_INVOICES;
+import static pl.coderstrust.database.jdbc.SqlQueries.GET_ALL_INVOICES_WITH_ENTRIES;
+import static pl.coderstrust.database.jdbc.SqlQueries.GET_EXISTING_COMPANY_IDS;
+import static pl.coderstrust.database.jdbc.SqlQueries.GET_EXISTING_INVOICE_IDS;
+import static pl.coderstrust.database.jdbc.SqlQueries.GET_INVOICES_BY_DUE_DATE;
+import static pl.coderstrust.database.jdbc.SqlQueries.GET_INVOICES_BY_ISSUED_DATE;
+import static pl.coderstrust.database.jdbc.SqlQueries.GET_INVOICES_PAGE;
 import static pl.coderstrust.database.jdbc.SqlQueries.GET_INVOICE_BY_ID;
 import static pl.coderstrust.database.jdbc.SqlQueries.GET_INVOICE_BY_NUMBER;
 import static pl.coderstrust.database.jdbc.SqlQueries.GET_INVOICE_ENTRIES;
+import static pl.coderstrust.database.jdbc.SqlQueries.GET_INVOICE_SUMMARIES;
 import static pl.coderstrust.database.jdbc.SqlQueries.INSERT_COMPANY;
+import static pl.coderstrust.database.jdbc.SqlQueries.INSERT_COMPANY_WITH_ID;
 import static pl.coderstrust.database.jdbc.SqlQueries.INSERT_INVOICE;
 import static pl.coderstrust.database.jdbc.SqlQueries.INSERT_INVOICE_ENTRIES;
 import static pl.coderstrust.database.jdbc.SqlQueries.INSERT_INVOICE_ENTRY;
+import static pl.coderstrust.database.jdbc.SqlQueries.INSERT_INVOICE_ENTRY_WITH_ID;
+import static pl.coderstrust.database.jdbc.SqlQueries.INSERT_INVOICE_WITH_ID;
+import static pl.coderstrust.database.jdbc.SqlQueries.RESERVE_IDS;
+import static pl.coderstrust.database.jdbc.SqlQueries.SEARCH_INVOICES;
 import static pl.coderstrust.database.jdbc.SqlQueries.UPDATE_INVOICE;
 import static pl.coderstrust.database.jdbc.SqlQueries.UPDATE_INVOICE_ENTRY;
 
 import java.io.IOException;
+import java.sql.Array;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.coderstrust.database.jdbc.InvoiceEntriesJoiningSpliterator;
 import pl.coderstrust.database.jdbc.InvoiceEntriesRowMapper;
 import pl.coderstrust.database.jdbc.InvoiceRowMapper;
+import pl.coderstrust.database.jdbc.InvoiceSummaryRowMapper;
+import pl.coderstrust.database.jdbc.InvoiceWithEntryRowMapper;
+import pl.coderstrust.database.jdbc.ResultSetSpliterator;
+import pl.coderstrust.model.BulkOperationResult;
 import pl.coderstrust.model.Company;
 import pl.coderstrust.model.Invoice;
 import pl.coderstrust.model.InvoiceEntry;
+import pl.coderstrust.model.InvoiceQuery;
+import pl.coderstrust.model.InvoiceSummary;
+import pl.coderstrust.model.InvoiceTotals;
+import pl.coderstrust.model.ReportGrouping;
 
 @Repository
 @ConditionalOnProperty(name = "pl.coderstrust.database", havingValue = "jdbc")
 public class SqlDatabase implements Database {
 
+    private static final int STREAM_FETCH_SIZE = 500;
+    private static final String GROSS_VALUE = "(SELECT COALESCE(SUM(E.gross_value), 0) FROM invoice_entries IE JOIN invoice_entry E ON E.id = IE.entries_id WHERE IE.invoice_id = O.id)";
+
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
 
     @Autowired
     public SqlDatabase(JdbcTemplate jdbcTemplate) throws IOException {
@@ -51,6 +86,7 @@ public class SqlDatabase implements Database {
             throw new IllegalArgumentException("JDBC template cannot be null.");
         }
         this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
     }
 
     @Override
@@ -68,6 +104,38 @@ public class SqlDatabase implements Database {
         }
     }
 
+    @Override
+    public synchronized List<BulkOperationResult> saveAll(List<Invoice> invoices) throws DatabaseOperationException {
+        if (invoices == null) {
+            throw new IllegalArgumentException("Invoices cannot be null.");
+        }
+        List<Invoice> newInvoices = invoices.stream().filter(invoice -> invoice != null && invoice.getId() == null).collect(Collectors.toList());
+        Iterator<Invoice> insertedInvoices = null;
+        if (!newInvoices.isEmpty()) {
+            try {
+                insertedInvoices = transactionTemplate.execute(status -> insertAllInvoices(newInvoices)).iterator();
+            } catch (RuntimeException e) {
+                // The batch has been rolled back, so the invoices are saved one by one below to tell which of them failed.
+                insertedInvoices = null;
+            }
+        }
+        List<BulkOperationResult> results = new ArrayList<>(invoices.size());
+        for (Invoice invoice : invoices) {
+            if (invoice == null) {
+                results.add(BulkOperationResult.failed(null, "Invoice cannot be null."));
+            } else if (invoice.getId() == null && insertedInvoices != null) {
+                results.add(BulkOperationResult.saved(insertedInvoices.next()));
+            } else {
+                try {
+                    results.add(BulkOperationResult.saved(save(invoice)));
+                } catch (DatabaseOperationException e) {
+                    results.add(BulkOperationResult.failed(invoice.getId(), e.getMessage()));
+                }
+            }
+        }
+        return results;
+    }
+
     @Override
     public void delete(Long id) throws DatabaseOperationException {
         if (id == null) {
@@ -83,6 +151,30 @@ public class SqlDatabase implements Database {
         }
     }
 
+    @Override
+    public synchronized List<BulkOperationResult> deleteAllById(List<Long> ids) throws DatabaseOperationException {
+        if (ids == null) {
+            throw new IllegalArgumentException("Ids cannot be null.");
+        }
+        Set<Long> existingIds;
+        try {
+            existingIds = transactionTemplate.execute(status -> deleteExistingInvoices(ids.stream().filter(Objects::nonNull).collect(Collectors.toSet())));
+        } catch (DataAccessException e) {
+            throw new DatabaseOperationException("An error occured during deleting invoices from database");
+        }
+        List<BulkOperationResult> results = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            if (id == null) {
+                results.add(BulkOperationResult.failed(null, "Id cannot be null."));
+            } else if (existingIds.remove(id)) {
+                results.add(BulkOperationResult.deleted(id));
+            } else {
+                results.add(BulkOperationResult.failed(id, String.format("There is no invoice  id: %s", id)));
+            }
+        }
+        return results;
+    }
+
     @Override
     public Optional<Invoice> getById(Long id) throws DatabaseOperationException {
         if (id == null) {
@@ -107,6 +199,73 @@ public class SqlDatabase implements Database {
         }
     }
 
+    @Override
+    public Collection<Invoice> getByIssuedDateRange(LocalDate from, LocalDate to) throws DatabaseOperationException {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Date range bounds cannot be null.");
+        }
+        try {
+            return jdbcTemplate.query(GET_INVOICES_BY_ISSUED_DATE, new Object[] {Date.valueOf(from), Date.valueOf(to)}, new InvoiceRowMapper()).stream().map(i -> buildInvoice(i, getInvoiceEntries(i.getId()))).collect(Collectors.toList());
+        } catch (DataAccessException e) {
+            throw new DatabaseOperationException("An error occured during getting invoices by issued date range");
+        }
+    }
+
+    @Override
+    public Collection<Invoice> getByDueDateRange(LocalDate from, LocalDate to) throws DatabaseOperationException {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Date range bounds cannot be null.");
+        }
+        try {
+            return jdbcTemplate.query(GET_INVOICES_BY_DUE_DATE, new Object[] {Date.valueOf(from), Date.valueOf(to)}, new InvoiceRowMapper()).stream().map(i -> buildInvoice(i, getInvoiceEntries(i.getId()))).collect(Collectors.toList());
+        } catch (DataAccessException e) {
+            throw new DatabaseOperationException("An error occured during getting invoices by due date range");
+        }
+    }
+
+    @Override
+    public List<Invoice> search(InvoiceQuery query) throws DatabaseOperationException {
+        if (query == null) {
+            throw new IllegalArgumentException("Query cannot be null.");
+        }
+        List<String> conditions = new ArrayList<>();
+        List<Object> arguments = new ArrayList<>();
+        addCondition(conditions, arguments, "A.tax_id = ?", query.getBuyerTaxId());
+        addCondition(conditions, arguments, "B.tax_id = ?", query.getSellerTaxId());
+        addCondition(conditions, arguments, "O.issued_date >= ?", query.getIssuedFrom() == null ? null : Date.valueOf(query.getIssuedFrom()));
+        addCondition(conditions, arguments, "O.issued_date <= ?", query.getIssuedTo() == null ? null : Date.valueOf(query.getIssuedTo()));
+        addCondition(conditions, arguments, "O.due_date >= ?", query.getDueFrom() == null ? null : Date.valueOf(query.getDueFrom()));
+        addCondition(conditions, arguments, "O.due_date <= ?", query.getDueTo() == null ? null : Date.valueOf(query.getDueTo()));
+        addCondition(conditions, arguments, "O.number LIKE ? ESCAPE '\\'", query.getNumberPrefix() == null ? null : escapeLike(query.getNumberPrefix()) + "%");
+        addCondition(conditions, arguments, GROSS_VALUE + " >= ?", query.getMinGross());
+        addCondition(conditions, arguments, GROSS_VALUE + " <= ?", query.getMaxGross());
+        String sql = String.format(SEARCH_INVOICES, conditions.isEmpty() ? "TRUE" : String.join(" AND ", conditions));
+        try {
+            return jdbcTemplate.query(sql, arguments.toArray(), new InvoiceRowMapper()).stream().map(i -> buildInvoice(i, getInvoiceEntries(i.getId()))).collect(Collectors.toList());
+        } catch (DataAccessException e) {
+            throw new DatabaseOperationException("An error occured during searching invoices");
+        }
+    }
+
+    private void addCondition(List<String> conditions, List<Object> arguments, String condition, Object argument) {
+        if (argument != null) {
+            conditions.add(condition);
+            arguments.add(argument);
+        }
+    }
+
+    private String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    @Override
+    public List<InvoiceTotals> getTotals(ReportGrouping grouping, LocalDate from, LocalDate to) throws DatabaseOperationException {
+        if (grouping == null) {
+            throw new IllegalArgumentException("Report grouping cannot be null.");
+        }
+        return InvoiceTotalsCalculator.calculate(getByIssuedDateRange(from, to), grouping);
+    }
+
     @Override
     public Collection<Invoice> getAll() throws DatabaseOperationException {
         try {
@@ -116,6 +275,37 @@ public class SqlDatabase implements Database {
         }
     }
 
+    @Override
+    public List<Invoice> getPage(Long afterId, int limit) throws DatabaseOperationException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit must be greater than zero.");
+        }
+        try {
+            return jdbcTemplate.query(GET_INVOICES_PAGE, new Object[] {afterId == null ? Long.MIN_VALUE : afterId, limit}, new InvoiceRowMapper()).stream().map(i -> buildInvoice(i, getInvoiceEntries(i.getId()))).collect(Collectors.toList());
+        } catch (DataAccessException e) {
+            throw new DatabaseOperationException("An error occured during getting page of invoices from database");
+        }
+    }
+
+    @Override
+    public Stream<Invoice> streamAll() throws DatabaseOperationException {
+        try {
+            // Entries are joined into the cursor, so the whole stream is read with one query on one connection.
+            return InvoiceEntriesJoiningSpliterator.join(ResultSetSpliterator.stream(jdbcTemplate, GET_ALL_INVOICES_WITH_ENTRIES, STREAM_FETCH_SIZE, new InvoiceWithEntryRowMapper()));
+        } catch (DataAccessException e) {
+            throw new DatabaseOperationException("An error occured during streaming all invoices from database");
+        }
+    }
+
+    @Override
+    public List<InvoiceSummary> getSummaries() throws DatabaseOperationException {
+        try {
+            return jdbcTemplate.query(GET_INVOICE_SUMMARIES, new InvoiceSummaryRowMapper());
+        } catch (DataAccessException e) {
+            throw new DatabaseOperationException("An error occured during getting invoice summaries from database");
+        }
+    }
+
     @Override
     public void deleteAll() throws DatabaseOperationException {
         try {
@@ -174,6 +364,87 @@ public class SqlDatabase implements Database {
         return jdbcTemplate.query(GET_INVOICE_ENTRIES, new Object[] {invoiceId}, new InvoiceEntriesRowMapper());
     }
 
+    private List<Invoice> insertAllInvoices(List<Invoice> invoices) {
+        Set<Long> existingCompanies = getExistingIds(GET_EXISTING_COMPANY_IDS, invoices.stream()
+            .flatMap(invoice -> Stream.of(invoice.getBuyer().getId(), invoice.getSeller().getId()))
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet()));
+        int newCompanies = (int) invoices.stream()
+            .flatMap(invoice -> Stream.of(invoice.getBuyer(), invoice.getSeller()))
+            .filter(company -> company.getId() == null || !existingCompanies.contains(company.getId()))
+            .count();
+        Iterator<Long> companyIds = reserveIds("company_id_seq", newCompanies).iterator();
+        Iterator<Long> invoiceIds = reserveIds("invoice_id_seq", invoices.size()).iterator();
+        Iterator<Long> entryIds = reserveIds("invoice_entry_id_seq", invoices.stream().mapToInt(invoice -> invoice.getEntries().size()).sum()).iterator();
+        List<Object[]> companyRows = new ArrayList<>();
+        List<Object[]> entryRows = new ArrayList<>();
+        List<Object[]> invoiceRows = new ArrayList<>();
+        List<Object[]> invoiceEntriesRows = new ArrayList<>();
+        List<Invoice> insertedInvoices = new ArrayList<>(invoices.size());
+        for (Invoice invoice : invoices) {
+            Company buyer = prepareCompany(invoice.getBuyer(), existingCompanies, companyIds, companyRows);
+            Company seller = prepareCompany(invoice.getSeller(), existingCompanies, companyIds, companyRows);
+            long invoiceId = invoiceIds.next();
+            List<InvoiceEntry> invoiceEntries = new ArrayList<>();
+            for (InvoiceEntry entry : invoice.getEntries()) {
+                InvoiceEntry invoiceEntry = buildInvoiceEntry(entry, entryIds.next());
+                entryRows.add(new Object[] {invoiceEntry.getId(), invoiceEntry.getDescription(), invoiceEntry.getGrossValue(), invoiceEntry.getNetValue(), invoiceEntry.getPrice(),
+                    invoiceEntry.getQuantity(), invoiceEntry.getVatRate().getValue()});
+                invoiceEntriesRows.add(new Object[] {invoiceId, invoiceEntry.getId()});
+                invoiceEntries.add(invoiceEntry);
+            }
+            invoiceRows.add(new Object[] {invoiceId, Date.valueOf(invoice.getDueDate()), Date.valueOf(invoice.getIssuedDate()), invoice.getNumber(), buyer.getId(), seller.getId()});
+            insertedInvoices.add(buildInvoice(invoiceId, invoice, buyer, seller, invoiceEntries));
+        }
+        jdbcTemplate.batchUpdate(INSERT_COMPANY_WITH_ID, companyRows);
+        jdbcTemplate.batchUpdate(INSERT_INVOICE_ENTRY_WITH_ID, entryRows);
+        jdbcTemplate.batchUpdate(INSERT_INVOICE_WITH_ID, invoiceRows);
+        jdbcTemplate.batchUpdate(INSERT_INVOICE_ENTRIES, invoiceEntriesRows);
+        return insertedInvoices;
+    }
+
+    private Company prepareCompany(Company company, Set<Long> existingCompanies, Iterator<Long> companyIds, List<Object[]> companyRows) {
+        if (company.getId() != null && existingCompanies.contains(company.getId())) {
+            return company;
+        }
+        Company newCompany = buildCompany(company, companyIds.next());
+        companyRows.add(new Object[] {newCompany.getId(), newCompany.getAccountNumber(), newCompany.getAddress(), newCompany.getEmail(), newCompany.getName(),
+            newCompany.getPhoneNumber(), newCompany.getTaxId()});
+        return newCompany;
+    }
+
+    private Set<Long> deleteExistingInvoices(Set<Long> ids) {
+        Set<Long> existingIds = getExistingIds(GET_EXISTING_INVOICE_IDS, ids);
+        if (!existingIds.isEmpty()) {
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(DELETE_INVOICES_BY_IDS);
+                Array array = connection.createArrayOf("bigint", existingIds.toArray());
+                ps.setArray(1, array);
+                ps.setArray(2, array);
+                return ps;
+            });
+        }
+        return existingIds;
+    }
+
+    private Set<Long> getExistingIds(String query, Set<Long> ids) {
+        if (ids.isEmpty()) {
+            return new HashSet<>();
+        }
+        return new HashSet<>(jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(query);
+            ps.setArray(1, connection.createArrayOf("bigint", ids.toArray()));
+            return ps;
+        }, (rs, rowNum) -> rs.getLong("id")));
+    }
+
+    private List<Long> reserveIds(String sequence, int count) {
+        if (count == 0) {
+            return new ArrayList<>();
+        }
+        return jdbcTemplate.queryForList(RESERVE_IDS, new Object[] {sequence, count}, Long.class);
+    }
+
     private Invoice insertInvoice(Invoice invoice) throws Exception {
         List<InvoiceEntry> invoiceEntries = insertAllInvoiceEntries(invoice.getEntries());
         if (! companyExists(invoice.getBuyer().getId())) {
@@ -0,0 +1,288 @@
+package pl.coderstrust.database;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import pl.coderstrust.configuration.InFileDatabaseProperties;
+import pl.coderstrust.configuration.TieredDatabaseProperties;
+import pl.coderstrust.database.memory.CacheStats;
+import pl.coderstrust.database.memory.InvoiceCache;
+import pl.coderstrust.model.BulkOperationResult;
+import pl.coderstrust.model.Invoice;
+import pl.coderstrust.model.InvoiceQuery;
+import pl.coderstrust.model.InvoiceSummary;
+import pl.coderstrust.model.InvoiceTotals;
+import pl.coderstrust.model.ReportGrouping;
+
+@Repository
+@ConditionalOnProperty(name = "pl.coderstrust.database", havingValue = "tiered")
+public class TieredDatabase implements Database, Closeable {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private static Logger log = LoggerFactory.getLogger(TieredDatabase.class);
+
+    private final Database coldStore;
+    private final InvoiceCache cache;
+    private final Lock[] locks = new Lock[LOCK_STRIPES];
+    private ScheduledExecutorService statsLogger;
+
+    @Autowired
+    public TieredDatabase(TieredDatabaseProperties tieredDatabaseProperties, InFileDatabaseProperties inFileDatabaseProperties, ObjectMapper mapper) throws IOException {
+        this(new InFileLogDatabase(inFileDatabaseProperties, mapper), tieredDatabaseProperties);
+    }
+
+    public TieredDatabase(Database coldStore, TieredDatabaseProperties tieredDatabaseProperties) {
+        if (coldStore == null) {
+            log.error("Attempt to initialize database with null cold store.");
+            throw new IllegalArgumentException("Cold store cannot be null.");
+        }
+        if (tieredDatabaseProperties == null) {
+            log.error("Attempt to initialize database with null properties.");
+            throw new IllegalArgumentException("Properties cannot be null.");
+        }
+        this.coldStore = coldStore;
+        this.cache = new InvoiceCache(tieredDatabaseProperties.getMemoryBudget(), tieredDatabaseProperties.getHotIssuedDays());
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        log.info("Keeping up to {} bytes of invoices on heap.", tieredDatabaseProperties.getMemoryBudget());
+        long statsLogInterval = tieredDatabaseProperties.getStatsLogInterval();
+        if (statsLogInterval > 0) {
+            statsLogger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "invoice-cache-stats-logger");
+                thread.setDaemon(true);
+                return thread;
+            });
+            statsLogger.scheduleWithFixedDelay(this::logCacheStats, statsLogInterval, statsLogInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public Invoice save(Invoice invoice) throws DatabaseOperationException {
+        if (invoice == null) {
+            log.error("Attempt to save null invoice to database.");
+            throw new IllegalArgumentException("Invoice cannot be null.");
+        }
+        if (invoice.getId() == null || !coldStore.exists(invoice.getId())) {
+            Invoice insertedInvoice = coldStore.save(invoice);
+            cacheIfPresent(insertedInvoice);
+            return insertedInvoice;
+        }
+        Lock lock = lockFor(invoice.getId());
+        lock.lock();
+        try {
+            Invoice savedInvoice = coldStore.save(invoice);
+            cache.put(savedInvoice);
+            return savedInvoice;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<BulkOperationResult> saveAll(List<Invoice> invoices) throws DatabaseOperationException {
+        // Saved invoices are only invalidated, so a large import does not push the hot set out of the cache.
+        lockAll();
+        try {
+            List<BulkOperationResult> results = coldStore.saveAll(invoices);
+            results.stream()
+                .filter(BulkOperationResult::isSucceeded)
+                .forEach(result -> cache.remove(result.getId()));
+            return results;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    @Override
+    public void delete(Long id) throws DatabaseOperationException {
+        if (id == null) {
+            log.error("Attempt to delete invoice by null id.");
+            throw new IllegalArgumentException("Invoice id cannot be null.");
+        }
+        Lock lock = lockFor(id);
+        lock.lock();
+        try {
+            coldStore.delete(id);
+        } finally {
+            cache.remove(id);
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<BulkOperationResult> deleteAllById(List<Long> ids) throws DatabaseOperationException {
+        lockAll();
+        try {
+            return coldStore.deleteAllById(ids);
+        } finally {
+            if (ids != null) {
+                ids.stream()
+                    .filter(Objects::nonNull)
+                    .forEach(cache::remove);
+            }
+            unlockAll();
+        }
+    }
+
+    @Override
+    public Optional<Invoice> getById(Long id) throws DatabaseOperationException {
+        if (id == null) {
+            log.error("Attempt to get invoice by null id.");
+            throw new IllegalArgumentException("Invoice id cannot be null.");
+        }
+        Invoice cachedInvoice = cache.get(id);
+        if (cachedInvoice != null) {
+            return Optional.of(cachedInvoice);
+        }
+        Lock lock = lockFor(id);
+        lock.lock();
+        try {
+            Optional<Invoice> invoice = coldStore.getById(id);
+            invoice.ifPresent(cache::putIfAbsent);
+            return invoice;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Invoice> getByNumber(String number) throws DatabaseOperationException {
+        Invoice cachedInvoice = number == null ? null : cache.getByNumber(number);
+        if (cachedInvoice != null) {
+            return Optional.of(cachedInvoice);
+        }
+        return coldStore.getByNumber(number);
+    }
+
+    @Override
+    public Collection<Invoice> getByIssuedDateRange(LocalDate from, LocalDate to) throws DatabaseOperationException {
+        return coldStore.getByIssuedDateRange(from, to);
+    }
+
+    @Override
+    public Collection<Invoice> getByDueDateRange(LocalDate from, LocalDate to) throws DatabaseOperationException {
+        return coldStore.getByDueDateRange(from, to);
+    }
+
+    @Override
+    public List<Invoice> search(InvoiceQuery query) throws DatabaseOperationException {
+        return coldStore.search(query);
+    }
+
+    @Override
+    public List<InvoiceTotals> getTotals(ReportGrouping grouping, LocalDate from, LocalDate to) throws DatabaseOperationException {
+        return coldStore.getTotals(grouping, from, to);
+    }
+
+    @Override
+    public Collection<Invoice> getAll() throws DatabaseOperationException {
+        return coldStore.getAll();
+    }
+
+    @Override
+    public List<Invoice> getPage(Long afterId, int limit) throws DatabaseOperationException {
+        return coldStore.getPage(afterId, limit);
+    }
+
+    @Override
+    public Stream<Invoice> streamAll() throws DatabaseOperationException {
+        return coldStore.streamAll();
+    }
+
+    @Override
+    public List<InvoiceSummary> getSummaries() throws DatabaseOperationException {
+        return coldStore.getSummaries();
+    }
+
+    @Override
+    public void deleteAll() throws DatabaseOperationException {
+        lockAll();
+        try {
+            coldStore.deleteAll();
+        } finally {
+            cache.clear();
+            unlockAll();
+        }
+    }
+
+    @Override
+    public boolean exists(Long id) throws DatabaseOperationException {
+        // Only invoices present in the cold store are cached, so a cache hit answers without touching the disk.
+        if (id != null && cache.get(id) != null) {
+            return true;
+        }
+        return coldStore.exists(id);
+    }
+
+    @Override
+    public long count() throws DatabaseOperationException {
+        return coldStore.count();
+    }
+
+    public CacheStats getCacheStats() {
+        return cache.getStats();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (statsLogger != null) {
+            statsLogger.shutdownNow();
+        }
+        if (coldStore instanceof Closeable) {
+            ((Closeable) coldStore).close();
+        }
+    }
+
+    private void logCacheStats() {
+        CacheStats stats = cache.getStats();
+        log.info("Invoice cache served {} hits and {} misses, evicted {} invoices and keeps {} invoices in {} of {} bytes.", stats.getHits(), stats.getMisses(),
+            stats.getEvictions(), stats.getResidentInvoices(), stats.getResidentBytes(), stats.getMemoryBudget());
+    }
+
+    private void lockAll() {
+        for (Lock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (Lock lock : locks) {
+            lock.unlock();
+        }
+    }
+
+    private void cacheIfPresent(Invoice invoice) throws DatabaseOperationException {
+        Lock lock = lockFor(invoice.getId());
+        lock.lock();
+        try {
+            // A concurrent update or delete of a just inserted invoice may already have reached the cold store.
+            if (coldStore.exists(invoice.getId())) {
+                cache.putIfAbsent(invoice);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Lock lockFor(Long id) {
+        return locks[Math.floorMod(Long.hashCode(id), LOCK_STRIPES)];
+    }
+}
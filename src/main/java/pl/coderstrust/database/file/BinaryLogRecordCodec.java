@@ -0,0 +1,97 @@
+package pl.coderstrust.database.file;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class BinaryLogRecordCodec implements LogRecordCodec {
+
+    public static final byte VERSION = 1;
+
+    private static final byte[] MAGIC = {'I', 'N', 'V', 'L'};
+    private static final int FRAME_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+
+    private static Logger log = LoggerFactory.getLogger(BinaryLogRecordCodec.class);
+
+    private final ObjectMapper mapper;
+
+    public BinaryLogRecordCodec() {
+        this.mapper = new ObjectMapper(new SmileFactory());
+        this.mapper.registerModule(new JavaTimeModule());
+    }
+
+    public static boolean hasHeader(byte[] bytes, int length) {
+        return length >= MAGIC.length && Arrays.equals(bytes, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+
+    public static int headerLength() {
+        return MAGIC.length + 1;
+    }
+
+    @Override
+    public LogFormat getFormat() {
+        return LogFormat.BINARY;
+    }
+
+    @Override
+    public byte[] header() {
+        byte[] header = Arrays.copyOf(MAGIC, headerLength());
+        header[MAGIC.length] = VERSION;
+        return header;
+    }
+
+    @Override
+    public byte[] encode(LogRecord record) throws IOException {
+        byte[] payload = mapper.writeValueAsBytes(record);
+        return ByteBuffer.allocate(FRAME_HEADER_SIZE + payload.length)
+            .putInt(payload.length)
+            .putInt(checksum(ByteBuffer.wrap(payload)))
+            .put(payload)
+            .array();
+    }
+
+    @Override
+    public int frameLength(ByteBuffer buffer, int offset, int available) throws IOException {
+        if (available < Integer.BYTES) {
+            return -1;
+        }
+        int payloadLength = buffer.getInt(offset);
+        if (payloadLength < 0 || payloadLength > MAX_RECORD_SIZE) {
+            throw new IOException(String.format("Invalid binary record length: %s.", payloadLength));
+        }
+        return FRAME_HEADER_SIZE + payloadLength;
+    }
+
+    @Override
+    public LogRecord decode(ByteBuffer buffer, int offset, int length) {
+        if (length <= FRAME_HEADER_SIZE) {
+            return null;
+        }
+        int payloadLength = buffer.getInt(offset);
+        ByteBuffer payload = buffer.duplicate().limit(offset + length).position(offset + FRAME_HEADER_SIZE);
+        if (payloadLength != length - FRAME_HEADER_SIZE || buffer.getInt(offset + Integer.BYTES) != checksum(payload.duplicate())) {
+            log.warn("Skipping binary record with invalid checksum in invoice log.");
+            return null;
+        }
+        try {
+            return mapper.readValue(new ByteBufferBackedInputStream(payload), LogRecord.class);
+        } catch (IOException e) {
+            log.warn("Skipping unreadable binary record in invoice log.");
+            return null;
+        }
+    }
+
+    private static int checksum(ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,20 @@
+package pl.coderstrust.database.file;
+
+import java.time.Instant;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder(builderClassName = "CompactionStatsBuilder", toBuilder = true)
+public final class CompactionStats {
+
+    private final long runs;
+    private final long bytesReclaimed;
+    private final long lastBytesReclaimed;
+    private final long lastDurationMillis;
+    private final Instant lastCompactedAt;
+
+    public static CompactionStats empty() {
+        return CompactionStats.builder().build();
+    }
+}
@@ -0,0 +1,7 @@
+package pl.coderstrust.database.file;
+
+public enum FsyncPolicy {
+    BATCH,
+    INTERVAL,
+    OS
+}
@@ -0,0 +1,350 @@
+package pl.coderstrust.database.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.coderstrust.model.Invoice;
+
+public class GroupCommitWriter implements Closeable {
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private static Logger log = LoggerFactory.getLogger(GroupCommitWriter.class);
+
+    private final InvoiceLog invoiceLog;
+    private final LogIndex index;
+    private final AtomicLong nextId;
+    private final Lock writeLock;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMillis;
+    private final int maxBatchSize;
+    private final BlockingQueue<Operation> queue = new LinkedBlockingQueue<>();
+    private final List<Operation> awaitingSync = new ArrayList<>();
+    // Locations of records written but not yet durable, a null location stands for a deleted invoice.
+    private final Map<Long, RecordLocation> unpublished = new HashMap<>();
+    private final Thread thread;
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+    private volatile boolean running = true;
+    private long lastSync = System.nanoTime();
+    private boolean holdingWriteLock;
+
+    public GroupCommitWriter(InvoiceLog invoiceLog, LogIndex index, AtomicLong nextId, Lock writeLock, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis, int maxBatchSize) {
+        if (invoiceLog == null) {
+            throw new IllegalArgumentException("Invoice log cannot be null.");
+        }
+        if (index == null) {
+            throw new IllegalArgumentException("Index cannot be null.");
+        }
+        if (nextId == null) {
+            throw new IllegalArgumentException("Id counter cannot be null.");
+        }
+        if (writeLock == null) {
+            throw new IllegalArgumentException("Write lock cannot be null.");
+        }
+        if (fsyncPolicy == null) {
+            throw new IllegalArgumentException("Fsync policy cannot be null.");
+        }
+        if (fsyncPolicy == FsyncPolicy.INTERVAL && fsyncIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Fsync interval must be greater than zero.");
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be greater than zero.");
+        }
+        this.invoiceLog = invoiceLog;
+        this.index = index;
+        this.nextId = nextId;
+        this.writeLock = writeLock;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.thread = new Thread(this::run, "invoice-log-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public CompletableFuture<Invoice> save(Invoice invoice) {
+        if (invoice == null) {
+            throw new IllegalArgumentException("Invoice cannot be null.");
+        }
+        return submit(new Operation(OperationType.SAVE, invoice, invoice.getId()));
+    }
+
+    public List<CompletableFuture<Invoice>> saveAll(List<Invoice> invoices) {
+        if (invoices == null || invoices.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Invoices cannot be null.");
+        }
+        List<Operation> operations = new ArrayList<>(invoices.size());
+        invoices.forEach(invoice -> operations.add(new Operation(OperationType.SAVE, invoice, invoice.getId())));
+        return submitAll(operations);
+    }
+
+    public CompletableFuture<Boolean> delete(Long id) {
+        if (id == null) {
+            throw new IllegalArgumentException("Invoice id cannot be null.");
+        }
+        return submit(new Operation(OperationType.DELETE, null, id));
+    }
+
+    public List<CompletableFuture<Boolean>> deleteAllById(List<Long> ids) {
+        if (ids == null || ids.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Invoice ids cannot be null.");
+        }
+        List<Operation> operations = new ArrayList<>(ids.size());
+        ids.forEach(id -> operations.add(new Operation(OperationType.DELETE, null, id)));
+        return submitAll(operations);
+    }
+
+    public CompletableFuture<Void> clear() {
+        return submit(new Operation(OperationType.CLEAR, null, null));
+    }
+
+    @Override
+    public void close() throws IOException {
+        stop();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing invoice log writer.", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> submit(Operation operation) {
+        // Operations are queued under the same lock that stops the writer, so none can arrive after its final drain.
+        stateLock.readLock().lock();
+        try {
+            if (!running) {
+                operation.future.completeExceptionally(new IOException("Invoice log writer is closed."));
+            } else {
+                queue.add(operation);
+            }
+        } finally {
+            stateLock.readLock().unlock();
+        }
+        return (CompletableFuture<T>) operation.future;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<CompletableFuture<T>> submitAll(List<Operation> operations) {
+        stateLock.readLock().lock();
+        try {
+            if (!running) {
+                operations.forEach(operation -> operation.future.completeExceptionally(new IOException("Invoice log writer is closed.")));
+            } else {
+                // Queued together, the operations are drained into as few group-committed batches as the batch size allows.
+                queue.addAll(operations);
+            }
+        } finally {
+            stateLock.readLock().unlock();
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(operations.size());
+        operations.forEach(operation -> futures.add((CompletableFuture<T>) operation.future));
+        return futures;
+    }
+
+    private void run() {
+        List<Operation> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty() || !awaitingSync.isEmpty()) {
+            try {
+                Operation first = queue.poll(pollTimeout(), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatchSize - 1);
+                    process(batch);
+                    batch.clear();
+                }
+                if (!awaitingSync.isEmpty() && (isSyncDue() || !running)) {
+                    sync();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stop();
+            }
+        }
+        Operation operation;
+        while ((operation = queue.poll()) != null) {
+            operation.future.completeExceptionally(new IOException("Invoice log writer is closed."));
+        }
+    }
+
+    private void stop() {
+        stateLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+    }
+
+    private long pollTimeout() {
+        if (awaitingSync.isEmpty()) {
+            return IDLE_POLL_MILLIS;
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastSync);
+        return Math.max(0, fsyncIntervalMillis - elapsed);
+    }
+
+    private boolean isSyncDue() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastSync) >= fsyncIntervalMillis;
+    }
+
+    private void process(List<Operation> batch) {
+        // Records stay out of the index until they are durable, and the write lock keeps checkpoints and compaction
+        // from running in between, so they never see a record that is in the log but not yet in the index.
+        if (!holdingWriteLock) {
+            writeLock.lock();
+            holdingWriteLock = true;
+        }
+        Map<Long, RecordLocation> locations;
+        try {
+            locations = write(batch);
+            if (fsyncPolicy == FsyncPolicy.BATCH) {
+                invoiceLog.sync();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("An error occurred during writing batch of {} operations to invoice log.", batch.size(), e);
+            batch.forEach(operation -> operation.future.completeExceptionally(e));
+            if (awaitingSync.isEmpty()) {
+                releaseWriteLock();
+            }
+            return;
+        }
+        unpublished.putAll(locations);
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            awaitingSync.addAll(batch);
+        } else {
+            publish();
+            releaseWriteLock();
+            batch.forEach(Operation::complete);
+        }
+    }
+
+    private void sync() {
+        try {
+            invoiceLog.sync();
+            publish();
+            awaitingSync.forEach(Operation::complete);
+        } catch (IOException e) {
+            log.error("An error occurred during syncing invoice log.", e);
+            unpublished.clear();
+            awaitingSync.forEach(operation -> operation.future.completeExceptionally(e));
+        } finally {
+            releaseWriteLock();
+        }
+        awaitingSync.clear();
+        lastSync = System.nanoTime();
+    }
+
+    private void publish() {
+        unpublished.forEach((id, location) -> {
+            if (location == null) {
+                index.remove(id);
+            } else {
+                index.put(id, location);
+            }
+        });
+        unpublished.clear();
+    }
+
+    private void releaseWriteLock() {
+        if (holdingWriteLock) {
+            holdingWriteLock = false;
+            writeLock.unlock();
+        }
+    }
+
+    private Map<Long, RecordLocation> write(List<Operation> batch) throws IOException {
+        List<LogRecord> records = new ArrayList<>();
+        Map<Long, Boolean> pending = new HashMap<>();
+        Map<Long, RecordLocation> locations = new HashMap<>();
+        for (Operation operation : batch) {
+            if (operation.type == OperationType.CLEAR) {
+                records.clear();
+                pending.clear();
+                locations.clear();
+                unpublished.clear();
+                invoiceLog.clear();
+                index.clear();
+                continue;
+            }
+            boolean exists = operation.id != null && (pending.containsKey(operation.id) ? pending.get(operation.id) : exists(operation.id));
+            if (operation.type == OperationType.SAVE) {
+                Invoice invoice = buildInvoice(exists ? operation.id : nextId.incrementAndGet(), operation.invoice);
+                records.add(LogRecord.put(invoice));
+                pending.put(invoice.getId(), true);
+                operation.result = invoice;
+            } else {
+                if (exists) {
+                    records.add(LogRecord.delete(operation.id));
+                    pending.put(operation.id, false);
+                }
+                operation.result = exists;
+            }
+        }
+        List<RecordLocation> appended = invoiceLog.appendAll(records);
+        for (int i = 0; i < records.size(); i++) {
+            LogRecord record = records.get(i);
+            locations.put(record.getId(), record.isTombstone() ? null : appended.get(i));
+        }
+        return locations;
+    }
+
+    private boolean exists(Long id) {
+        if (unpublished.containsKey(id)) {
+            return unpublished.get(id) != null;
+        }
+        return index.contains(id);
+    }
+
+    private Invoice buildInvoice(Long id, Invoice invoice) {
+        return Invoice.builder()
+            .id(id)
+            .number(invoice.getNumber())
+            .dueDate(invoice.getDueDate())
+            .issuedDate(invoice.getIssuedDate())
+            .buyer(invoice.getBuyer())
+            .seller(invoice.getSeller())
+            .entries(invoice.getEntries())
+            .build();
+    }
+
+    private enum OperationType {
+        SAVE,
+        DELETE,
+        CLEAR
+    }
+
+    private static final class Operation {
+
+        private final OperationType type;
+        private final Invoice invoice;
+        private final Long id;
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+        private Object result;
+
+        private Operation(OperationType type, Invoice invoice, Long id) {
+            this.type = type;
+            this.invoice = invoice;
+            this.id = id;
+        }
+
+        private void complete() {
+            future.complete(result);
+        }
+    }
+}
@@ -0,0 +1,585 @@
+package pl.coderstrust.database.file;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class InvoiceLog implements Closeable {
+
+    private static final String MANIFEST_FILE = "MANIFEST";
+    private static final String MANIFEST_TEMP_FILE = "MANIFEST.tmp";
+    private static final String CHECKPOINT_FILE = "CHECKPOINT";
+    private static final String CHECKPOINT_TEMP_FILE = "CHECKPOINT.tmp";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final long MAX_SEGMENT_SIZE = 1024 * 1024 * 1024;
+
+    private static Logger log = LoggerFactory.getLogger(InvoiceLog.class);
+
+    private final Path directory;
+    private final ObjectMapper mapper;
+    private final LogRecordCodecs codecs;
+    private final LogFormat format;
+    private final long segmentSize;
+    private final Map<Long, LogSegment> segmentsById = new ConcurrentHashMap<>();
+    private final AtomicLong lastSegmentId = new AtomicLong(0);
+    private final AtomicLong modifications = new AtomicLong(0);
+    private final Lock maintenanceLock = new ReentrantLock();
+    private volatile List<LogSegment> segments;
+    private volatile LogSegment active;
+
+    public InvoiceLog(Path directory, ObjectMapper mapper, long segmentSize) throws IOException {
+        this(directory, mapper, segmentSize, LogFormat.JSON);
+    }
+
+    public InvoiceLog(Path directory, ObjectMapper mapper, long segmentSize, LogFormat format) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("Directory of the log cannot be null.");
+        }
+        if (mapper == null) {
+            throw new IllegalArgumentException("Mapper cannot be null.");
+        }
+        if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Segment size must be greater than zero and not greater than 1 GB.");
+        }
+        if (format == null) {
+            throw new IllegalArgumentException("Log format cannot be null.");
+        }
+        this.directory = directory;
+        this.mapper = mapper;
+        this.codecs = new LogRecordCodecs(mapper);
+        this.format = format;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        open();
+    }
+
+    public RecordLocation append(LogRecord record) throws IOException {
+        if (record == null) {
+            throw new IllegalArgumentException("Record cannot be null.");
+        }
+        return appendAll(List.of(record)).get(0);
+    }
+
+    public synchronized List<RecordLocation> appendAll(List<LogRecord> records) throws IOException {
+        if (records == null) {
+            throw new IllegalArgumentException("Records cannot be null.");
+        }
+        if (records.isEmpty()) {
+            return List.of();
+        }
+        if (active.size() >= segmentSize) {
+            roll();
+        }
+        long offset = active.size();
+        try {
+            return active.append(encode(records, active.getCodec()));
+        } catch (IOException | RuntimeException e) {
+            sealIfTorn(offset, e);
+            throw e;
+        }
+    }
+
+    public void sync() throws IOException {
+        active.force();
+    }
+
+    public LogRecord read(RecordLocation location) throws IOException {
+        if (location == null) {
+            throw new IllegalArgumentException("Location cannot be null.");
+        }
+        LogSegment segment = segmentsById.get(location.getSegment());
+        if (segment == null) {
+            return null;
+        }
+        ByteBuffer buffer;
+        try {
+            buffer = segment.read(location.getOffset(), location.getLength());
+        } catch (ClosedChannelException e) {
+            return null;
+        }
+        LogRecord record = segment.decode(buffer);
+        if (record == null) {
+            throw new IOException(String.format("Record at offset %s of segment %s cannot be read.", location.getOffset(), location.getSegment()));
+        }
+        return record;
+    }
+
+    public boolean scan(RecordVisitor visitor) throws IOException {
+        if (visitor == null) {
+            throw new IllegalArgumentException("Visitor cannot be null.");
+        }
+        long version = modifications.get();
+        if (version % 2 != 0) {
+            return false;
+        }
+        try {
+            for (LogSegment segment : segments) {
+                segment.scan(visitor);
+            }
+        } catch (ClosedChannelException e) {
+            return false;
+        }
+        return version == modifications.get();
+    }
+
+    public Optional<List<Long>> scanInParallel(RecordVisitor visitor) throws IOException {
+        if (visitor == null) {
+            throw new IllegalArgumentException("Visitor cannot be null.");
+        }
+        long version = modifications.get();
+        if (version % 2 != 0) {
+            return Optional.empty();
+        }
+        List<LogSegment> snapshot = segments;
+        try {
+            snapshot.parallelStream().forEach(segment -> {
+                try {
+                    segment.scan(visitor);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            if (e.getCause() instanceof ClosedChannelException) {
+                return Optional.empty();
+            }
+            throw e.getCause();
+        }
+        if (version != modifications.get()) {
+            return Optional.empty();
+        }
+        return Optional.of(snapshot.stream()
+            .map(LogSegment::getId)
+            .collect(Collectors.toList()));
+    }
+
+    public boolean scanAfter(LogCheckpoint checkpoint, RecordVisitor visitor) throws IOException {
+        if (checkpoint == null) {
+            throw new IllegalArgumentException("Checkpoint cannot be null.");
+        }
+        if (visitor == null) {
+            throw new IllegalArgumentException("Visitor cannot be null.");
+        }
+        List<LogSegment> current = segments;
+        List<Long> checkpointSegments = checkpoint.getSegments();
+        if (checkpointSegments.isEmpty() || current.size() < checkpointSegments.size()) {
+            return false;
+        }
+        for (int i = 0; i < checkpointSegments.size(); i++) {
+            if (current.get(i).getId() != checkpointSegments.get(i)) {
+                return false;
+            }
+        }
+        LogSegment last = current.get(checkpointSegments.size() - 1);
+        if (last.size() < checkpoint.getPosition()) {
+            return false;
+        }
+        last.scan(checkpoint.getPosition(), last.size(), visitor);
+        for (LogSegment segment : current.subList(checkpointSegments.size(), current.size())) {
+            segment.scan(visitor);
+        }
+        return true;
+    }
+
+    public synchronized LogCheckpoint checkpoint(Map<Long, RecordLocation> locations, long nextId) throws IOException {
+        if (locations == null) {
+            throw new IllegalArgumentException("Locations cannot be null.");
+        }
+        active.force();
+        return new LogCheckpoint(nextId, segmentIds(), active.size(), locations);
+    }
+
+    public void writeCheckpoint(LogCheckpoint checkpoint) throws IOException {
+        if (checkpoint == null) {
+            throw new IllegalArgumentException("Checkpoint cannot be null.");
+        }
+        checkpoint.write(directory.resolve(CHECKPOINT_FILE), directory.resolve(CHECKPOINT_TEMP_FILE));
+        log.debug("Invoice log {} has been checkpointed with {} invoices.", directory, checkpoint.getLocations().size());
+    }
+
+    public Optional<LogCheckpoint> readCheckpoint() throws IOException {
+        return LogCheckpoint.read(directory.resolve(CHECKPOINT_FILE));
+    }
+
+    public long compact(List<Long> segmentIds, LogIndex index, Lock writeLock) throws IOException {
+        if (segmentIds == null || segmentIds.isEmpty()) {
+            throw new IllegalArgumentException("Segments to compact cannot be null or empty.");
+        }
+        if (index == null) {
+            throw new IllegalArgumentException("Index cannot be null.");
+        }
+        if (writeLock == null) {
+            throw new IllegalArgumentException("Write lock cannot be null.");
+        }
+        maintenanceLock.lock();
+        try {
+            List<LogSegment> sources = sealedSegments(segmentIds);
+            if (sources.isEmpty()) {
+                return 0;
+            }
+            boolean includesOldest = sources.get(0) == segments.get(0);
+            long targetId = lastSegmentId.incrementAndGet();
+            LogSegment target = LogSegment.open(targetId, segmentPath(targetId), codecs, format);
+            Map<Long, RecordLocation> origins = new HashMap<>();
+            Map<Long, RecordLocation> relocated = new HashMap<>();
+            AtomicLong highestId = new AtomicLong(0);
+            AtomicLong highestKeptId = new AtomicLong(0);
+            for (LogSegment source : sources) {
+                source.scan((location, record) -> {
+                    highestId.accumulateAndGet(record.getId(), Math::max);
+                    boolean live = !record.isTombstone() && index.isLive(record.getId(), location);
+                    if (live || (record.isTombstone() && !includesOldest)) {
+                        RecordLocation copied = copyRecord(source, location, record, target);
+                        highestKeptId.accumulateAndGet(record.getId(), Math::max);
+                        if (live) {
+                            origins.put(record.getId(), location);
+                            relocated.put(record.getId(), copied);
+                        }
+                    }
+                });
+            }
+            if (highestId.get() > highestKeptId.get()) {
+                target.append(target.getCodec().encode(LogRecord.delete(highestId.get())));
+            }
+            target.force();
+            long reclaimed = -target.dataSize();
+            for (LogSegment source : sources) {
+                reclaimed += source.dataSize();
+            }
+            writeLock.lock();
+            try {
+                synchronized (this) {
+                    if (!segments.containsAll(sources)) {
+                        log.debug("Invoice log {} has been cleared during compaction.", directory);
+                        target.delete();
+                        return 0;
+                    }
+                    if (hasUncopiedRecords(sources, origins, index)) {
+                        log.debug("Invoice log {} got records published to compacted segments during compaction.", directory);
+                        target.delete();
+                        return 0;
+                    }
+                    swap(sources, target, origins, relocated, index);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+            for (LogSegment source : sources) {
+                source.delete();
+            }
+            return reclaimed;
+        } finally {
+            maintenanceLock.unlock();
+        }
+    }
+
+    public void backup(Path targetDirectory) throws IOException {
+        if (targetDirectory == null) {
+            throw new IllegalArgumentException("Backup directory cannot be null.");
+        }
+        maintenanceLock.lock();
+        try {
+            List<LogSegment> snapshot;
+            long activeSize;
+            synchronized (this) {
+                snapshot = segments;
+                activeSize = active.size();
+            }
+            Files.createDirectories(targetDirectory);
+            LogSegment last = snapshot.get(snapshot.size() - 1);
+            for (LogSegment segment : snapshot) {
+                Path target = targetDirectory.resolve(segment.getPath().getFileName());
+                if (segment == last) {
+                    copy(segment.getPath(), target, activeSize);
+                } else if (!Files.exists(target) || Files.size(target) != segment.size()) {
+                    copy(segment.getPath(), target, segment.size());
+                }
+            }
+            writeManifest(targetDirectory, snapshot);
+            deleteOrphanedSegments(targetDirectory, snapshot.stream().map(LogSegment::getId).collect(Collectors.toSet()));
+            log.debug("Invoice log {} has been backed up to {}.", directory, targetDirectory);
+        } finally {
+            maintenanceLock.unlock();
+        }
+    }
+
+    public synchronized void clear() throws IOException {
+        modifications.incrementAndGet();
+        try {
+            for (LogSegment segment : segments) {
+                segmentsById.remove(segment.getId());
+                segment.delete();
+            }
+            LogSegment segment = createSegment();
+            segments = List.of(segment);
+            active = segment;
+            writeManifest(directory, segments);
+        } finally {
+            modifications.incrementAndGet();
+        }
+    }
+
+    public List<Long> segmentIds() {
+        return segments.stream()
+            .map(LogSegment::getId)
+            .collect(Collectors.toList());
+    }
+
+    public long activeSegmentId() {
+        return active.getId();
+    }
+
+    public long activeSize() throws IOException {
+        return active.size();
+    }
+
+    public long size(long segmentId) throws IOException {
+        LogSegment segment = segmentsById.get(segmentId);
+        return segment == null ? 0 : segment.dataSize();
+    }
+
+    public long size() throws IOException {
+        long size = 0;
+        for (LogSegment segment : segments) {
+            size += segment.dataSize();
+        }
+        return size;
+    }
+
+    public Optional<LogFormat> format(long segmentId) {
+        LogSegment segment = segmentsById.get(segmentId);
+        return segment == null ? Optional.empty() : Optional.of(segment.getFormat());
+    }
+
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    public LogFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (LogSegment segment : segments) {
+            segment.close();
+        }
+    }
+
+    private void open() throws IOException {
+        Files.deleteIfExists(directory.resolve(MANIFEST_TEMP_FILE));
+        Files.deleteIfExists(directory.resolve(CHECKPOINT_TEMP_FILE));
+        Path manifestPath = directory.resolve(MANIFEST_FILE);
+        List<Long> ids = Files.exists(manifestPath) ? mapper.readValue(manifestPath.toFile(), LogManifest.class).getSegments() : List.of();
+        deleteOrphanedSegments(directory, new HashSet<>(ids));
+        List<LogSegment> opened = new ArrayList<>();
+        for (Long id : ids) {
+            Path path = segmentPath(id);
+            if (!Files.exists(path)) {
+                throw new IOException(String.format("Segment %s listed in manifest of invoice log %s is missing.", path, directory));
+            }
+            LogSegment segment = LogSegment.open(id, path, codecs, format);
+            segmentsById.put(id, segment);
+            opened.add(segment);
+            lastSegmentId.accumulateAndGet(id, Math::max);
+        }
+        if (opened.isEmpty()) {
+            opened.add(createSegment());
+            writeManifest(directory, opened);
+        }
+        segments = Collections.unmodifiableList(opened);
+        active = opened.get(opened.size() - 1);
+        active.truncateTornTail();
+        if (active.getFormat() != format) {
+            roll();
+        }
+    }
+
+    private void sealIfTorn(long offset, Exception cause) {
+        try {
+            if (active.size() != offset) {
+                // The segment could not be truncated back, so appends continue in a new one and the torn bytes stay at its end.
+                roll();
+            }
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private void roll() throws IOException {
+        active.force();
+        LogSegment segment = createSegment();
+        List<LogSegment> rolled = new ArrayList<>(segments);
+        rolled.add(segment);
+        writeManifest(directory, rolled);
+        segments = Collections.unmodifiableList(rolled);
+        active = segment;
+        log.debug("Invoice log {} rolled over to segment {}.", directory, segment.getPath());
+    }
+
+    private List<LogSegment> sealedSegments(List<Long> segmentIds) throws IOException {
+        synchronized (this) {
+            if (segmentIds.contains(active.getId())) {
+                roll();
+            }
+        }
+        List<LogSegment> current = segments;
+        List<LogSegment> sources = current.stream()
+            .filter(segment -> segmentIds.contains(segment.getId()))
+            .collect(Collectors.toList());
+        if (sources.size() != segmentIds.size()) {
+            return List.of();
+        }
+        int first = current.indexOf(sources.get(0));
+        if (!current.subList(first, first + sources.size()).equals(sources)) {
+            throw new IllegalArgumentException("Segments to compact must be adjacent.");
+        }
+        return sources;
+    }
+
+    private boolean hasUncopiedRecords(List<LogSegment> sources, Map<Long, RecordLocation> origins, LogIndex index) {
+        // A record published after its segment was scanned would be left pointing at a deleted segment.
+        long copiedLiveBytes = origins.entrySet().stream()
+            .filter(origin -> index.isLive(origin.getKey(), origin.getValue()))
+            .mapToLong(origin -> origin.getValue().getLength())
+            .sum();
+        long liveBytes = sources.stream()
+            .mapToLong(source -> index.liveBytes(source.getId()))
+            .sum();
+        return liveBytes != copiedLiveBytes;
+    }
+
+    private void swap(List<LogSegment> sources, LogSegment target, Map<Long, RecordLocation> origins, Map<Long, RecordLocation> relocated, LogIndex index) throws IOException {
+        List<LogSegment> compacted = new ArrayList<>(segments);
+        int position = compacted.indexOf(sources.get(0));
+        compacted.removeAll(sources);
+        boolean empty = target.isEmpty();
+        if (!empty) {
+            compacted.add(position, target);
+        }
+        writeManifest(directory, compacted);
+        modifications.incrementAndGet();
+        try {
+            if (!empty) {
+                segmentsById.put(target.getId(), target);
+            }
+            segments = Collections.unmodifiableList(compacted);
+            relocated.forEach((id, location) -> index.relocate(id, origins.get(id), location));
+            for (LogSegment source : sources) {
+                segmentsById.remove(source.getId());
+                index.removeSegment(source.getId());
+            }
+        } finally {
+            modifications.incrementAndGet();
+        }
+        if (empty) {
+            target.delete();
+        }
+    }
+
+    private RecordLocation copyRecord(LogSegment source, RecordLocation location, LogRecord record, LogSegment target) throws IOException {
+        if (source.getFormat() != target.getFormat()) {
+            return target.append(target.getCodec().encode(record));
+        }
+        long offset = target.size();
+        source.transferTo(location, target);
+        return new RecordLocation(target.getId(), offset, location.getLength());
+    }
+
+    private List<byte[]> encode(List<LogRecord> records, LogRecordCodec codec) throws IOException {
+        List<byte[]> encoded = new ArrayList<>(records.size());
+        for (LogRecord record : records) {
+            if (record == null) {
+                throw new IllegalArgumentException("Record cannot be null.");
+            }
+            encoded.add(codec.encode(record));
+        }
+        return encoded;
+    }
+
+    private LogSegment createSegment() throws IOException {
+        long id = lastSegmentId.incrementAndGet();
+        LogSegment segment = LogSegment.open(id, segmentPath(id), codecs, format);
+        segmentsById.put(id, segment);
+        return segment;
+    }
+
+    private void writeManifest(Path targetDirectory, List<LogSegment> manifestSegments) throws IOException {
+        LogManifest manifest = LogManifest.builder()
+            .segments(manifestSegments.stream().map(LogSegment::getId).collect(Collectors.toList()))
+            .build();
+        Path temp = targetDirectory.resolve(MANIFEST_TEMP_FILE);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(mapper.writeValueAsBytes(manifest));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, targetDirectory.resolve(MANIFEST_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void deleteOrphanedSegments(Path targetDirectory, Set<Long> ids) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(targetDirectory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                if (!ids.contains(segmentId(file))) {
+                    log.warn("Deleting segment {} which is not listed in manifest.", file);
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private void copy(Path source, Path target, long length) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long copied = 0;
+            while (copied < length) {
+                long chunk = in.transferTo(copied, length - copied, out);
+                if (chunk == 0) {
+                    throw new IOException(String.format("Unexpected end of segment %s during backup.", source));
+                }
+                copied += chunk;
+            }
+            out.force(true);
+        }
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private long segmentId(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
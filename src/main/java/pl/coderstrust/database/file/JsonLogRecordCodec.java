@@ -0,0 +1,67 @@
+package pl.coderstrust.database.file;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class JsonLogRecordCodec implements LogRecordCodec {
+
+    private static final byte NEW_LINE = '\n';
+    private static final byte[] HEADER = new byte[0];
+
+    private static Logger log = LoggerFactory.getLogger(JsonLogRecordCodec.class);
+
+    private final ObjectMapper mapper;
+
+    public JsonLogRecordCodec(ObjectMapper mapper) {
+        if (mapper == null) {
+            throw new IllegalArgumentException("Mapper cannot be null.");
+        }
+        this.mapper = mapper;
+    }
+
+    @Override
+    public LogFormat getFormat() {
+        return LogFormat.JSON;
+    }
+
+    @Override
+    public byte[] header() {
+        return HEADER;
+    }
+
+    @Override
+    public byte[] encode(LogRecord record) throws IOException {
+        byte[] json = mapper.writeValueAsBytes(record);
+        byte[] line = new byte[json.length + 1];
+        System.arraycopy(json, 0, line, 0, json.length);
+        line[json.length] = NEW_LINE;
+        return line;
+    }
+
+    @Override
+    public int frameLength(ByteBuffer buffer, int offset, int available) {
+        for (int i = offset; i < offset + available; i++) {
+            if (buffer.get(i) == NEW_LINE) {
+                return i - offset + 1;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public LogRecord decode(ByteBuffer buffer, int offset, int length) {
+        if (length <= 1) {
+            return null;
+        }
+        try {
+            return mapper.readValue(new ByteBufferBackedInputStream(buffer.duplicate().limit(offset + length).position(offset)), LogRecord.class);
+        } catch (IOException e) {
+            log.warn("Skipping unreadable JSON record in invoice log.");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package pl.coderstrust.database.file;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.coderstrust.model.Invoice;
+
+public class LegacyFileConverter {
+
+    private static final int BATCH_SIZE = 512;
+
+    private static Logger log = LoggerFactory.getLogger(LegacyFileConverter.class);
+
+    private final ObjectMapper mapper;
+
+    public LegacyFileConverter(ObjectMapper mapper) {
+        if (mapper == null) {
+            throw new IllegalArgumentException("Mapper cannot be null.");
+        }
+        this.mapper = mapper;
+    }
+
+    public long convert(Path file, InvoiceLog invoiceLog) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("File to convert cannot be null.");
+        }
+        if (invoiceLog == null) {
+            throw new IllegalArgumentException("Invoice log cannot be null.");
+        }
+        long converted = 0;
+        List<LogRecord> batch = new ArrayList<>(BATCH_SIZE);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            while (line != null) {
+                Invoice invoice = deserialize(line);
+                if (invoice != null) {
+                    batch.add(LogRecord.put(invoice));
+                }
+                if (batch.size() == BATCH_SIZE) {
+                    converted += flush(batch, invoiceLog);
+                }
+                line = reader.readLine();
+            }
+        }
+        converted += flush(batch, invoiceLog);
+        invoiceLog.sync();
+        log.info("Converted {} invoices from file {} to invoice log in {} format.", converted, file, invoiceLog.getFormat());
+        return converted;
+    }
+
+    private long flush(List<LogRecord> batch, InvoiceLog invoiceLog) throws IOException {
+        int size = batch.size();
+        invoiceLog.appendAll(batch);
+        batch.clear();
+        return size;
+    }
+
+    private Invoice deserialize(String line) {
+        if (line.isBlank()) {
+            return null;
+        }
+        try {
+            Invoice invoice = mapper.readValue(line, Invoice.class);
+            if (invoice.getId() == null) {
+                log.warn("Skipping invoice without id during conversion.");
+                return null;
+            }
+            return invoice;
+        } catch (IOException e) {
+            log.warn("Skipping unreadable line during conversion.");
+            return null;
+        }
+    }
+}
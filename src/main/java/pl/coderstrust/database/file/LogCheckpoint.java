@@ -0,0 +1,96 @@
+package pl.coderstrust.database.file;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Data
+public final class LogCheckpoint {
+
+    private static final int MAGIC = 0x494e5643;
+    private static final byte VERSION = 1;
+
+    private static Logger log = LoggerFactory.getLogger(LogCheckpoint.class);
+
+    private final long nextId;
+    private final List<Long> segments;
+    private final long position;
+    private final Map<Long, RecordLocation> locations;
+
+    public static Optional<LogCheckpoint> read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        try {
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.capacity() - Long.BYTES);
+            if (buffer.getInt() != MAGIC || buffer.get() != VERSION || buffer.getLong(buffer.capacity() - Long.BYTES) != crc.getValue()) {
+                log.warn("Ignoring invalid invoice log checkpoint {}.", file);
+                return Optional.empty();
+            }
+            long nextId = buffer.getLong();
+            long position = buffer.getLong();
+            int segmentCount = buffer.getInt();
+            List<Long> segments = new ArrayList<>(segmentCount);
+            for (int i = 0; i < segmentCount; i++) {
+                segments.add(buffer.getLong());
+            }
+            int locationCount = buffer.getInt();
+            Map<Long, RecordLocation> locations = new HashMap<>(locationCount * 2);
+            for (int i = 0; i < locationCount; i++) {
+                locations.put(buffer.getLong(), new RecordLocation(buffer.getLong(), buffer.getLong(), buffer.getInt()));
+            }
+            return Optional.of(new LogCheckpoint(nextId, segments, position, locations));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            log.warn("Ignoring truncated invoice log checkpoint {}.", file);
+            return Optional.empty();
+        }
+    }
+
+    public void write(Path file, Path tempFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CRC32 crc = new CRC32();
+            OutputStream stream = Channels.newOutputStream(channel);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(stream, crc)));
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+            output.writeLong(nextId);
+            output.writeLong(position);
+            output.writeInt(segments.size());
+            for (Long segment : segments) {
+                output.writeLong(segment);
+            }
+            output.writeInt(locations.size());
+            for (Map.Entry<Long, RecordLocation> entry : locations.entrySet()) {
+                output.writeLong(entry.getKey());
+                output.writeLong(entry.getValue().getSegment());
+                output.writeLong(entry.getValue().getOffset());
+                output.writeInt(entry.getValue().getLength());
+            }
+            output.flush();
+            new DataOutputStream(stream).writeLong(crc.getValue());
+            channel.force(true);
+        }
+        Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,100 @@
+package pl.coderstrust.database.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class LogCheckpointer implements Closeable {
+
+    private static Logger log = LoggerFactory.getLogger(LogCheckpointer.class);
+
+    private final InvoiceLog invoiceLog;
+    private final LogIndex index;
+    private final AtomicLong nextId;
+    private final Lock writeLock;
+    private LogCheckpoint lastCheckpoint;
+    private ScheduledExecutorService executor;
+
+    public LogCheckpointer(InvoiceLog invoiceLog, LogIndex index, AtomicLong nextId, Lock writeLock) {
+        if (invoiceLog == null) {
+            throw new IllegalArgumentException("Invoice log cannot be null.");
+        }
+        if (index == null) {
+            throw new IllegalArgumentException("Index cannot be null.");
+        }
+        if (nextId == null) {
+            throw new IllegalArgumentException("Id counter cannot be null.");
+        }
+        if (writeLock == null) {
+            throw new IllegalArgumentException("Write lock cannot be null.");
+        }
+        this.invoiceLog = invoiceLog;
+        this.index = index;
+        this.nextId = nextId;
+        this.writeLock = writeLock;
+    }
+
+    public synchronized void start(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Checkpoint interval must be greater than zero.");
+        }
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "invoice-log-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::checkpointInBackground, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized boolean checkpointIfNeeded() throws IOException {
+        if (lastCheckpoint != null && isCurrent(lastCheckpoint)) {
+            return false;
+        }
+        checkpoint();
+        return true;
+    }
+
+    public synchronized LogCheckpoint checkpoint() throws IOException {
+        LogCheckpoint checkpoint;
+        writeLock.lock();
+        try {
+            checkpoint = invoiceLog.checkpoint(index.snapshot(), nextId.get());
+        } finally {
+            writeLock.unlock();
+        }
+        invoiceLog.writeCheckpoint(checkpoint);
+        lastCheckpoint = checkpoint;
+        return checkpoint;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private boolean isCurrent(LogCheckpoint checkpoint) throws IOException {
+        List<Long> segments = invoiceLog.segmentIds();
+        return segments.equals(checkpoint.getSegments()) && invoiceLog.activeSize() == checkpoint.getPosition();
+    }
+
+    private void checkpointInBackground() {
+        try {
+            checkpointIfNeeded();
+        } catch (IOException e) {
+            log.error("An error occurred during checkpointing invoice log.", e);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package pl.coderstrust.database.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class LogCompactor implements Closeable {
+
+    private static Logger log = LoggerFactory.getLogger(LogCompactor.class);
+
+    private final InvoiceLog invoiceLog;
+    private final LogIndex index;
+    private final Lock writeLock;
+    private final double deadRecordRatio;
+    private final long minSize;
+    private volatile CompactionStats stats = CompactionStats.empty();
+    private ScheduledExecutorService executor;
+
+    public LogCompactor(InvoiceLog invoiceLog, LogIndex index, Lock writeLock, double deadRecordRatio, long minSize) {
+        if (invoiceLog == null) {
+            throw new IllegalArgumentException("Invoice log cannot be null.");
+        }
+        if (index == null) {
+            throw new IllegalArgumentException("Index cannot be null.");
+        }
+        if (writeLock == null) {
+            throw new IllegalArgumentException("Write lock cannot be null.");
+        }
+        if (deadRecordRatio <= 0 || deadRecordRatio > 1) {
+            throw new IllegalArgumentException("Dead record ratio must be greater than zero and not greater than one.");
+        }
+        this.invoiceLog = invoiceLog;
+        this.index = index;
+        this.writeLock = writeLock;
+        this.deadRecordRatio = deadRecordRatio;
+        this.minSize = minSize;
+    }
+
+    public synchronized void start(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Compaction interval must be greater than zero.");
+        }
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "invoice-log-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::compactInBackground, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isCompactionNeeded() throws IOException {
+        return !segmentsToCompact(deadRecordRatio, minSize).isEmpty();
+    }
+
+    public synchronized boolean compactIfNeeded() throws IOException {
+        List<List<Long>> groups = segmentsToCompact(deadRecordRatio, minSize);
+        if (groups.isEmpty()) {
+            return false;
+        }
+        compactGroups(groups);
+        return true;
+    }
+
+    public synchronized CompactionStats compact() throws IOException {
+        return compactGroups(segmentsToCompact(Double.MIN_VALUE, 0));
+    }
+
+    public CompactionStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private List<List<Long>> segmentsToCompact(double ratio, long minLogSize) throws IOException {
+        List<List<Long>> groups = new ArrayList<>();
+        if (invoiceLog.size() < minLogSize) {
+            return groups;
+        }
+        List<Long> group = new ArrayList<>();
+        long groupLiveBytes = 0;
+        for (Long segment : invoiceLog.segmentIds()) {
+            long size = invoiceLog.size(segment);
+            long liveBytes = index.liveBytes(segment);
+            boolean converted = invoiceLog.format(segment).map(format -> format != invoiceLog.getFormat()).orElse(false);
+            boolean candidate = converted || (size > 0 && (double) (size - liveBytes) / size >= ratio);
+            if (!candidate || groupLiveBytes + liveBytes > invoiceLog.getSegmentSize()) {
+                addGroup(groups, group);
+                group = new ArrayList<>();
+                groupLiveBytes = 0;
+            }
+            if (candidate) {
+                group.add(segment);
+                groupLiveBytes += liveBytes;
+            }
+        }
+        addGroup(groups, group);
+        return groups;
+    }
+
+    private void addGroup(List<List<Long>> groups, List<Long> group) {
+        if (!group.isEmpty()) {
+            groups.add(group);
+        }
+    }
+
+    private CompactionStats compactGroups(List<List<Long>> groups) throws IOException {
+        long start = System.nanoTime();
+        long reclaimed = 0;
+        for (List<Long> group : groups) {
+            reclaimed += invoiceLog.compact(group, index, writeLock);
+        }
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        stats = stats.toBuilder()
+            .runs(stats.getRuns() + 1)
+            .bytesReclaimed(stats.getBytesReclaimed() + reclaimed)
+            .lastBytesReclaimed(reclaimed)
+            .lastDurationMillis(duration)
+            .lastCompactedAt(Instant.now())
+            .build();
+        log.info("Invoice log compaction of {} segment groups reclaimed {} bytes in {} ms.", groups.size(), reclaimed, duration);
+        return stats;
+    }
+
+    private void compactInBackground() {
+        try {
+            compactIfNeeded();
+        } catch (IOException e) {
+            log.error("An error occurred during compacting invoice log.", e);
+        }
+    }
+}
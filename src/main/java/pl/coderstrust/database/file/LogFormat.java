@@ -0,0 +1,6 @@
+package pl.coderstrust.database.file;
+
+public enum LogFormat {
+    JSON,
+    BINARY
+}
@@ -0,0 +1,96 @@
+package pl.coderstrust.database.file;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LogIndex {
+
+    private final ConcurrentNavigableMap<Long, RecordLocation> locations = new ConcurrentSkipListMap<>();
+    private final Map<Long, AtomicLong> liveBytesBySegment = new ConcurrentHashMap<>();
+    private final AtomicLong liveBytes = new AtomicLong(0);
+
+    public RecordLocation get(Long id) {
+        return locations.get(id);
+    }
+
+    public boolean contains(Long id) {
+        return locations.containsKey(id);
+    }
+
+    public boolean isLive(Long id, RecordLocation location) {
+        return location.equals(locations.get(id));
+    }
+
+    public void put(Long id, RecordLocation location) {
+        RecordLocation previous = locations.put(id, location);
+        addLiveBytes(location, location.getLength());
+        if (previous != null) {
+            addLiveBytes(previous, -previous.getLength());
+        }
+    }
+
+    public void remove(Long id) {
+        RecordLocation previous = locations.remove(id);
+        if (previous != null) {
+            addLiveBytes(previous, -previous.getLength());
+        }
+    }
+
+    public boolean relocate(Long id, RecordLocation from, RecordLocation to) {
+        if (!locations.replace(id, from, to)) {
+            return false;
+        }
+        addLiveBytes(to, to.getLength());
+        addLiveBytes(from, -from.getLength());
+        return true;
+    }
+
+    public List<Long> idsAfter(Long afterId, int limit) {
+        List<Long> ids = new ArrayList<>(limit);
+        for (Long id : afterId == null ? locations.keySet() : locations.tailMap(afterId, false).keySet()) {
+            if (ids.size() == limit) {
+                break;
+            }
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    public Map<Long, RecordLocation> snapshot() {
+        return new HashMap<>(locations);
+    }
+
+    public void removeSegment(long segment) {
+        liveBytesBySegment.remove(segment);
+    }
+
+    public void clear() {
+        locations.clear();
+        liveBytesBySegment.clear();
+        liveBytes.set(0);
+    }
+
+    public int size() {
+        return locations.size();
+    }
+
+    public long liveBytes() {
+        return liveBytes.get();
+    }
+
+    public long liveBytes(long segment) {
+        AtomicLong bytes = liveBytesBySegment.get(segment);
+        return bytes == null ? 0 : bytes.get();
+    }
+
+    private void addLiveBytes(RecordLocation location, long delta) {
+        liveBytesBySegment.computeIfAbsent(location.getSegment(), segment -> new AtomicLong(0)).addAndGet(delta);
+        liveBytes.addAndGet(delta);
+    }
+}
@@ -0,0 +1,19 @@
+package pl.coderstrust.database.file;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import java.util.List;
+import lombok.Builder;
+import lombok.Data;
+
+@JsonDeserialize(builder = LogManifest.LogManifestBuilder.class)
+@Data
+@Builder(builderClassName = "LogManifestBuilder", toBuilder = true)
+public final class LogManifest {
+
+    private final List<Long> segments;
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static class LogManifestBuilder {
+    }
+}
@@ -0,0 +1,49 @@
+package pl.coderstrust.database.file;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import lombok.Builder;
+import lombok.Data;
+import pl.coderstrust.model.Invoice;
+
+@JsonDeserialize(builder = LogRecord.LogRecordBuilder.class)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+@Builder(builderClassName = "LogRecordBuilder", toBuilder = true)
+public final class LogRecord {
+
+    private final Type type;
+    private final Long id;
+    private final Invoice invoice;
+
+    public static LogRecord put(Invoice invoice) {
+        return LogRecord.builder()
+            .type(Type.PUT)
+            .id(invoice.getId())
+            .invoice(invoice)
+            .build();
+    }
+
+    public static LogRecord delete(Long id) {
+        return LogRecord.builder()
+            .type(Type.DELETE)
+            .id(id)
+            .build();
+    }
+
+    @JsonIgnore
+    public boolean isTombstone() {
+        return type == Type.DELETE;
+    }
+
+    public enum Type {
+        PUT,
+        DELETE
+    }
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static class LogRecordBuilder {
+    }
+}
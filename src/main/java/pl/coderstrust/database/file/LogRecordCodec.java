@@ -0,0 +1,17 @@
+package pl.coderstrust.database.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public interface LogRecordCodec {
+
+    LogFormat getFormat();
+
+    byte[] header();
+
+    byte[] encode(LogRecord record) throws IOException;
+
+    int frameLength(ByteBuffer buffer, int offset, int available) throws IOException;
+
+    LogRecord decode(ByteBuffer buffer, int offset, int length);
+}
@@ -0,0 +1,32 @@
+package pl.coderstrust.database.file;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+
+public class LogRecordCodecs {
+
+    private final LogRecordCodec json;
+    private final LogRecordCodec binary;
+
+    public LogRecordCodecs(ObjectMapper mapper) {
+        this.json = new JsonLogRecordCodec(mapper);
+        this.binary = new BinaryLogRecordCodec();
+    }
+
+    public LogRecordCodec get(LogFormat format) {
+        if (format == null) {
+            throw new IllegalArgumentException("Log format cannot be null.");
+        }
+        return format == LogFormat.BINARY ? binary : json;
+    }
+
+    public LogRecordCodec detect(byte[] header, int length) throws IOException {
+        if (!BinaryLogRecordCodec.hasHeader(header, length)) {
+            return json;
+        }
+        if (length < BinaryLogRecordCodec.headerLength() || header[BinaryLogRecordCodec.headerLength() - 1] != BinaryLogRecordCodec.VERSION) {
+            throw new IOException("Unsupported version of binary invoice log format.");
+        }
+        return binary;
+    }
+}
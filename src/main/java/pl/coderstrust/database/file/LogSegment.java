@@ -0,0 +1,222 @@
+package pl.coderstrust.database.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class LogSegment implements Closeable {
+
+    private static Logger log = LoggerFactory.getLogger(LogSegment.class);
+
+    private final long id;
+    private final Path path;
+    private final FileChannel channel;
+    private final LogRecordCodec codec;
+    private final int headerLength;
+    private volatile MappedByteBuffer mapping;
+
+    private LogSegment(long id, Path path, FileChannel channel, LogRecordCodec codec) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.codec = codec;
+        this.headerLength = codec.header().length;
+    }
+
+    public static LogSegment open(long id, Path path, LogRecordCodecs codecs, LogFormat format) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                LogRecordCodec codec = codecs.get(format);
+                ByteBuffer header = ByteBuffer.wrap(codec.header());
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                return new LogSegment(id, path, channel, codec);
+            }
+            ByteBuffer header = ByteBuffer.allocate(BinaryLogRecordCodec.headerLength());
+            int read = 0;
+            while (header.hasRemaining() && read >= 0) {
+                read = channel.read(header, header.position());
+            }
+            return new LogSegment(id, path, channel, codecs.detect(header.array(), header.position()));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public LogRecordCodec getCodec() {
+        return codec;
+    }
+
+    public LogFormat getFormat() {
+        return codec.getFormat();
+    }
+
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    public long dataSize() throws IOException {
+        return Math.max(0, channel.size() - headerLength);
+    }
+
+    public boolean isEmpty() throws IOException {
+        return dataSize() == 0;
+    }
+
+    public RecordLocation append(byte[] bytes) throws IOException {
+        return append(List.of(bytes)).get(0);
+    }
+
+    public List<RecordLocation> append(List<byte[]> records) throws IOException {
+        long offset = channel.size();
+        List<RecordLocation> locations = new ArrayList<>(records.size());
+        ByteBuffer buffer = ByteBuffer.allocate(records.stream().mapToInt(record -> record.length).sum());
+        for (byte[] record : records) {
+            locations.add(new RecordLocation(id, offset + buffer.position(), record.length));
+            buffer.put(record);
+        }
+        buffer.flip();
+        try {
+            write(buffer, offset);
+        } catch (IOException | RuntimeException e) {
+            // Bytes of a partial write would hide every record appended after them from the next scan.
+            try {
+                truncateTo(offset, channel.size());
+            } catch (IOException truncateException) {
+                e.addSuppressed(truncateException);
+            }
+            throw e;
+        }
+        return locations;
+    }
+
+    public ByteBuffer read(long offset, int length) throws IOException {
+        ByteBuffer buffer = map(offset + length);
+        return buffer.duplicate().limit((int) offset + length).position((int) offset);
+    }
+
+    public LogRecord decode(ByteBuffer buffer) {
+        return codec.decode(buffer, buffer.position(), buffer.remaining());
+    }
+
+    public long scan(RecordVisitor visitor) throws IOException {
+        return scan(channel.size(), visitor);
+    }
+
+    public long scan(long limit, RecordVisitor visitor) throws IOException {
+        return scan(headerLength, limit, visitor);
+    }
+
+    public long scan(long start, long limit, RecordVisitor visitor) throws IOException {
+        if (limit <= start) {
+            return Math.max(start, headerLength);
+        }
+        ByteBuffer buffer = map(limit);
+        int position = (int) Math.max(start, headerLength);
+        while (position < limit) {
+            int length = codec.frameLength(buffer, position, (int) limit - position);
+            if (length <= 0 || length > limit - position) {
+                break;
+            }
+            LogRecord record = codec.decode(buffer, position, length);
+            if (record != null) {
+                visitor.visit(new RecordLocation(id, position, length), record);
+            }
+            position += length;
+        }
+        return position;
+    }
+
+    public void transferTo(RecordLocation location, LogSegment target) throws IOException {
+        long targetPosition = target.channel.size();
+        long transferred = 0;
+        while (transferred < location.getLength()) {
+            target.channel.position(targetPosition + transferred);
+            long chunk = channel.transferTo(location.getOffset() + transferred, location.getLength() - transferred, target.channel);
+            if (chunk == 0) {
+                throw new IOException(String.format("Unexpected end of segment %s.", path));
+            }
+            transferred += chunk;
+        }
+    }
+
+    public void truncateTornTail() throws IOException {
+        long size = channel.size();
+        truncateTo(scan(size, (location, record) -> { }), size);
+    }
+
+    public void force() throws IOException {
+        channel.force(true);
+    }
+
+    public void delete() throws IOException {
+        close();
+        mapping = null;
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void write(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private ByteBuffer map(long end) throws IOException {
+        if (!channel.isOpen()) {
+            throw new ClosedChannelException();
+        }
+        MappedByteBuffer current = mapping;
+        if (current != null && current.capacity() >= end) {
+            return current;
+        }
+        synchronized (this) {
+            current = mapping;
+            if (current == null || current.capacity() < end) {
+                long size = channel.size();
+                if (size < end) {
+                    throw new IOException(String.format("Record ending at offset %s is beyond the end of segment %s.", end, path));
+                }
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException(String.format("Segment %s is too large to be mapped.", path));
+                }
+                current = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                mapping = current;
+            }
+            return current;
+        }
+    }
+
+    private void truncateTo(long validSize, long size) throws IOException {
+        if (validSize < size) {
+            log.warn("Truncating {} bytes of incomplete record from segment {}.", size - validSize, path);
+            mapping = null;
+            channel.truncate(validSize);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package pl.coderstrust.database.file;
+
+import lombok.Data;
+
+@Data
+public final class RecordLocation {
+
+    private final long segment;
+    private final long offset;
+    private final int length;
+}
@@ -0,0 +1,9 @@
+package pl.coderstrust.database.file;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface RecordVisitor {
+
+    void visit(RecordLocation location, LogRecord record) throws IOException;
+}
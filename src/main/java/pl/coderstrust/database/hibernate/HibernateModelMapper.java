@@ -1,8 +1,10 @@
 package pl.coderstrust.database.hibernate;
 
 import java.util.Collection;
+import java.util.List;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
+import pl.coderstrust.model.InvoiceSummary;
 
 @Mapper(componentModel = "spring")
 public interface HibernateModelMapper {
@@ -11,6 +13,8 @@ public interface HibernateModelMapper {
 
     Collection<pl.coderstrust.model.Invoice> mapToInvoices(Collection<Invoice> invoices);
 
+    List<InvoiceSummary> mapToInvoiceSummaries(List<InvoiceSummaryView> summaries);
+
     @Mapping(target = "id", source = "id")
     @Mapping(target = "number", source = "number")
     @Mapping(target = "issuedDate", source = "issuedDate")
@@ -29,6 +33,16 @@ public interface HibernateModelMapper {
     @Mapping(target = "entries", source = "entries")
     pl.coderstrust.model.Invoice mapToInvoice(Invoice invoice);
 
+    @Mapping(target = "id", source = "id")
+    @Mapping(target = "number", source = "number")
+    @Mapping(target = "issuedDate", source = "issuedDate")
+    @Mapping(target = "dueDate", source = "dueDate")
+    @Mapping(target = "buyerName", source = "buyerName")
+    @Mapping(target = "sellerName", source = "sellerName")
+    @Mapping(target = "netValue", source = "netValue")
+    @Mapping(target = "grossValue", source = "grossValue")
+    InvoiceSummary mapToInvoiceSummary(InvoiceSummaryView summary);
+
     @Mapping(target = "id", source = "id")
     @Mapping(target = "name", source = "name")
     @Mapping(target = "address", source = "address")
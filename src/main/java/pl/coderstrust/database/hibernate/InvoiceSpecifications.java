@@ -0,0 +1,73 @@
+package pl.coderstrust.database.hibernate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+import pl.coderstrust.model.InvoiceQuery;
+
+public final class InvoiceSpecifications {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    private InvoiceSpecifications() {
+    }
+
+    public static Specification<Invoice> matching(InvoiceQuery query) {
+        if (query == null) {
+            throw new IllegalArgumentException("Query cannot be null.");
+        }
+        return (root, criteriaQuery, builder) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (query.getBuyerTaxId() != null) {
+                predicates.add(builder.equal(root.get("buyer").get("taxId"), query.getBuyerTaxId()));
+            }
+            if (query.getSellerTaxId() != null) {
+                predicates.add(builder.equal(root.get("seller").get("taxId"), query.getSellerTaxId()));
+            }
+            addDateRange(predicates, builder, root.<LocalDate>get("issuedDate"), query.getIssuedFrom(), query.getIssuedTo());
+            addDateRange(predicates, builder, root.<LocalDate>get("dueDate"), query.getDueFrom(), query.getDueTo());
+            if (query.getNumberPrefix() != null) {
+                predicates.add(builder.like(root.<String>get("number"), escapeLike(query.getNumberPrefix()) + "%", LIKE_ESCAPE));
+            }
+            if (query.getMinGross() != null || query.getMaxGross() != null) {
+                Expression<BigDecimal> gross = builder.coalesce(grossValue(root, criteriaQuery, builder), BigDecimal.ZERO);
+                if (query.getMinGross() != null) {
+                    predicates.add(builder.greaterThanOrEqualTo(gross, query.getMinGross()));
+                }
+                if (query.getMaxGross() != null) {
+                    predicates.add(builder.lessThanOrEqualTo(gross, query.getMaxGross()));
+                }
+            }
+            return builder.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    private static Subquery<BigDecimal> grossValue(Root<Invoice> root, CriteriaQuery<?> criteriaQuery, CriteriaBuilder builder) {
+        Subquery<BigDecimal> gross = criteriaQuery.subquery(BigDecimal.class);
+        Root<Invoice> invoice = gross.from(Invoice.class);
+        Join<Invoice, InvoiceEntry> entries = invoice.join("entries");
+        return gross.select(builder.sum(entries.<BigDecimal>get("grossValue"))).where(builder.equal(invoice, root));
+    }
+
+    private static void addDateRange(List<Predicate> predicates, CriteriaBuilder builder, Expression<LocalDate> date, LocalDate from, LocalDate to) {
+        if (from != null) {
+            predicates.add(builder.greaterThanOrEqualTo(date, from));
+        }
+        if (to != null) {
+            predicates.add(builder.lessThanOrEqualTo(date, to));
+        }
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
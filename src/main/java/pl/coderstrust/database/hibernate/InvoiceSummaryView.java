@@ -0,0 +1,23 @@
+package pl.coderstrust.database.hibernate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public interface InvoiceSummaryView {
+
+    Long getId();
+
+    String getNumber();
+
+    LocalDate getIssuedDate();
+
+    LocalDate getDueDate();
+
+    String getBuyerName();
+
+    String getSellerName();
+
+    BigDecimal getNetValue();
+
+    BigDecimal getGrossValue();
+}
@@ -0,0 +1,54 @@
+package pl.coderstrust.database.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import pl.coderstrust.model.Invoice;
+import pl.coderstrust.model.InvoiceEntry;
+
+public class InvoiceEntriesJoiningSpliterator extends Spliterators.AbstractSpliterator<Invoice> {
+
+    private final Spliterator<Invoice> rows;
+    private Invoice row;
+    private boolean rowPending;
+
+    private InvoiceEntriesJoiningSpliterator(Spliterator<Invoice> rows) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.rows = rows;
+    }
+
+    public static Stream<Invoice> join(Stream<Invoice> rows) {
+        if (rows == null) {
+            throw new IllegalArgumentException("Rows cannot be null.");
+        }
+        return StreamSupport.stream(new InvoiceEntriesJoiningSpliterator(rows.spliterator()), false).onClose(rows::close);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Invoice> action) {
+        if (!rowPending && !rows.tryAdvance(this::setRow)) {
+            return false;
+        }
+        Invoice invoice = row;
+        List<InvoiceEntry> entries = new ArrayList<>(invoice.getEntries());
+        rowPending = false;
+        // Rows of one invoice come one after another, one for each of its entries.
+        while (rows.tryAdvance(this::setRow)) {
+            if (!row.getId().equals(invoice.getId())) {
+                rowPending = true;
+                break;
+            }
+            entries.addAll(row.getEntries());
+        }
+        action.accept(invoice.toBuilder().entries(entries).build());
+        return true;
+    }
+
+    private void setRow(Invoice row) {
+        this.row = row;
+    }
+}
@@ -0,0 +1,24 @@
+package pl.coderstrust.database.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import org.springframework.jdbc.core.RowMapper;
+import pl.coderstrust.model.InvoiceSummary;
+
+public class InvoiceSummaryRowMapper implements RowMapper<InvoiceSummary> {
+
+    @Override
+    public InvoiceSummary mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return InvoiceSummary
+            .builder()
+            .id(rs.getLong("ID"))
+            .number(rs.getString("number"))
+            .issuedDate(rs.getDate("issued_date").toLocalDate())
+            .dueDate(rs.getDate("due_date").toLocalDate())
+            .buyerName(rs.getString("buyer_name"))
+            .sellerName(rs.getString("seller_name"))
+            .netValue(rs.getBigDecimal("net_value"))
+            .grossValue(rs.getBigDecimal("gross_value"))
+            .build();
+    }
+}
@@ -0,0 +1,33 @@
+package pl.coderstrust.database.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.jdbc.core.RowMapper;
+import pl.coderstrust.model.Invoice;
+import pl.coderstrust.model.InvoiceEntry;
+import pl.coderstrust.model.Vat;
+
+public class InvoiceWithEntryRowMapper implements RowMapper<Invoice> {
+
+    private final InvoiceRowMapper invoiceRowMapper = new InvoiceRowMapper();
+
+    @Override
+    public Invoice mapRow(ResultSet rs, int rowNum) throws SQLException {
+        List<InvoiceEntry> entries = new ArrayList<>(1);
+        // An invoice without entries is still returned by the outer join, with its entry columns left empty.
+        if (rs.getObject("entry_id") != null) {
+            entries.add(InvoiceEntry.builder()
+                .id(rs.getLong("entry_id"))
+                .description(rs.getString("entry_description"))
+                .quantity(rs.getLong("entry_quantity"))
+                .price(rs.getBigDecimal("entry_price"))
+                .netValue(rs.getBigDecimal("entry_net_value"))
+                .grossValue(rs.getBigDecimal("entry_gross_value"))
+                .vatRate(Vat.getVatType(rs.getFloat("entry_vat_rate")))
+                .build());
+        }
+        return invoiceRowMapper.mapRow(rs, rowNum).toBuilder().entries(entries).build();
+    }
+}
@@ -0,0 +1,97 @@
+package pl.coderstrust.database.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.sql.DataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+
+public class ResultSetSpliterator<T> extends Spliterators.AbstractSpliterator<T> implements AutoCloseable {
+
+    private final String sql;
+    private final RowMapper<T> rowMapper;
+    private final SQLExceptionTranslator exceptionTranslator;
+    private final DataSource dataSource;
+    private final Connection connection;
+    private final boolean autoCommit;
+    private PreparedStatement statement;
+    private ResultSet resultSet;
+    private int rowNum;
+
+    private ResultSetSpliterator(JdbcTemplate jdbcTemplate, String sql, RowMapper<T> rowMapper) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.sql = sql;
+        this.rowMapper = rowMapper;
+        this.exceptionTranslator = jdbcTemplate.getExceptionTranslator();
+        this.dataSource = jdbcTemplate.getDataSource();
+        this.connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            this.autoCommit = connection.getAutoCommit();
+        } catch (SQLException e) {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+            throw exceptionTranslator.translate("Opening cursor", sql, e);
+        }
+    }
+
+    public static <T> Stream<T> stream(JdbcTemplate jdbcTemplate, String sql, int fetchSize, RowMapper<T> rowMapper) {
+        if (jdbcTemplate == null) {
+            throw new IllegalArgumentException("JDBC template cannot be null.");
+        }
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size must be greater than zero.");
+        }
+        ResultSetSpliterator<T> spliterator = new ResultSetSpliterator<>(jdbcTemplate, sql, rowMapper);
+        try {
+            // Drivers such as PostgreSQL only honour the fetch size inside a transaction, otherwise they buffer the whole result.
+            if (spliterator.autoCommit) {
+                spliterator.connection.setAutoCommit(false);
+            }
+            spliterator.statement = spliterator.connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            spliterator.statement.setFetchSize(fetchSize);
+            spliterator.resultSet = spliterator.statement.executeQuery();
+        } catch (SQLException e) {
+            spliterator.close();
+            throw spliterator.exceptionTranslator.translate("Opening cursor", sql, e);
+        }
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        try {
+            if (!resultSet.next()) {
+                return false;
+            }
+            action.accept(rowMapper.mapRow(resultSet, rowNum++));
+            return true;
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("Reading cursor", sql, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        JdbcUtils.closeResultSet(resultSet);
+        JdbcUtils.closeStatement(statement);
+        try {
+            if (autoCommit) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("Closing cursor", sql, e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+}
@@ -14,6 +14,12 @@ public class SqlQueries {
     public static String GET_INVOICE_BY_ID;
     public static String GET_INVOICE_BY_NUMBER;
     public static String GET_ALL_INVOICES;
+    public static String GET_ALL_INVOICES_WITH_ENTRIES;
+    public static String GET_INVOICES_BY_ISSUED_DATE;
+    public static String GET_INVOICES_BY_DUE_DATE;
+    public static String GET_INVOICES_PAGE;
+    public static String SEARCH_INVOICES;
+    public static String GET_INVOICE_SUMMARIES;
     public static String DELETE_ALL_DATA;
     public static String GET_INVOICE_ENTRIES;
     public static String DELETE_INVOICE_BY_ID;
@@ -27,12 +33,25 @@ public class SqlQueries {
     public static String INSERT_INVOICE_ENTRY;
     public static String INSERT_INVOICE_ENTRIES;
     public static String INSERT_COMPANY;
+    public static String RESERVE_IDS;
+    public static String GET_EXISTING_COMPANY_IDS;
+    public static String GET_EXISTING_INVOICE_IDS;
+    public static String INSERT_COMPANY_WITH_ID;
+    public static String INSERT_INVOICE_WITH_ID;
+    public static String INSERT_INVOICE_ENTRY_WITH_ID;
+    public static String DELETE_INVOICES_BY_IDS;
 
     static {
         try {
             GET_INVOICE_BY_ID = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/GET-INVOICE-BY-ID.sql"), ENCODING);
             GET_INVOICE_BY_NUMBER = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/GET-INVOICE-BY-NUM.sql"), ENCODING);
             GET_ALL_INVOICES = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/GET-ALL-INVOICES.sql"), ENCODING);
+            GET_ALL_INVOICES_WITH_ENTRIES = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/GET-ALL-INVOICES-WITH-ENTRIES.sql"), ENCODING);
+            GET_INVOICES_BY_ISSUED_DATE = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/GET-INVOICES-BY-ISSUED-DATE.sql"), ENCODING);
+            GET_INVOICES_BY_DUE_DATE = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/GET-INVOICES-BY-DUE-DATE.sql"), ENCODING);
+            GET_INVOICES_PAGE = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/GET-INVOICES-PAGE.sql"), ENCODING);
+            SEARCH_INVOICES = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/SEARCH-INVOICES.sql"), ENCODING);
+            GET_INVOICE_SUMMARIES = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/GET-INVOICE-SUMMARIES.sql"), ENCODING);
             DELETE_ALL_DATA = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/DELETE-ALL-DATA.sql"), ENCODING);
             GET_INVOICE_ENTRIES = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/GET-INVOICE-ENTRIES.sql"), ENCODING);
             DELETE_INVOICE_BY_ID = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/DELETE-INVOICE-BY-ID.sql"), ENCODING);
@@ -46,6 +65,13 @@ public class SqlQueries {
             INSERT_INVOICE_ENTRY = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/INSERT-INVOICE-ENTRY.sql"), ENCODING);
             INSERT_INVOICE_ENTRIES = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/INSERT-INVOICE-ENTRIES.sql"), ENCODING);
             INSERT_COMPANY = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/INSERT-COMPANY.sql"), ENCODING);
+            RESERVE_IDS = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/RESERVE-IDS.sql"), ENCODING);
+            GET_EXISTING_COMPANY_IDS = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/GET-EXISTING-COMPANY-IDS.sql"), ENCODING);
+            GET_EXISTING_INVOICE_IDS = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/GET-EXISTING-INVOICE-IDS.sql"), ENCODING);
+            INSERT_COMPANY_WITH_ID = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/INSERT-COMPANY-WITH-ID.sql"), ENCODING);
+            INSERT_INVOICE_WITH_ID = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/INSERT-INVOICE-WITH-ID.sql"), ENCODING);
+            INSERT_INVOICE_ENTRY_WITH_ID = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/INSERT-INVOICE-ENTRY-WITH-ID.sql"), ENCODING);
+            DELETE_INVOICES_BY_IDS = FileUtils.readFileToString(new File("src/main/resources/sqlScripts/DELETE-INVOICES-BY-IDS.sql"), ENCODING);
         } catch (IOException e) {
             try {
                 throw new DatabaseOperationException(String.format("An error occured during getting scripts from file: %s", e));
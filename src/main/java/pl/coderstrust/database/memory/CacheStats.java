@@ -0,0 +1,16 @@
+package pl.coderstrust.database.memory;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder(builderClassName = "CacheStatsBuilder", toBuilder = true)
+public final class CacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long residentInvoices;
+    private final long residentBytes;
+    private final long memoryBudget;
+}
@@ -0,0 +1,50 @@
+package pl.coderstrust.database.memory;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.UnaryOperator;
+
+public class Interner<T> {
+
+    private static final int STRIPES = 16;
+
+    private final Map<T, WeakReference<T>>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    public Interner() {
+        stripes = new Map[STRIPES];
+        Arrays.setAll(stripes, stripe -> new WeakHashMap<>());
+    }
+
+    public T intern(T value) {
+        return intern(value, UnaryOperator.identity());
+    }
+
+    public T intern(T value, UnaryOperator<T> canonicalizer) {
+        if (value == null) {
+            return null;
+        }
+        Map<T, WeakReference<T>> canonicalValues = stripes[Math.floorMod(value.hashCode(), STRIPES)];
+        synchronized (canonicalValues) {
+            WeakReference<T> reference = canonicalValues.get(value);
+            T canonicalValue = reference == null ? null : reference.get();
+            if (canonicalValue == null) {
+                canonicalValue = canonicalizer.apply(value);
+                canonicalValues.put(canonicalValue, new WeakReference<>(canonicalValue));
+            }
+            return canonicalValue;
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map<T, WeakReference<T>> canonicalValues : stripes) {
+            synchronized (canonicalValues) {
+                size += canonicalValues.size();
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,213 @@
+package pl.coderstrust.database.memory;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import pl.coderstrust.model.Company;
+import pl.coderstrust.model.Invoice;
+import pl.coderstrust.model.InvoiceEntry;
+
+public class InvoiceCache {
+
+    private static final int EVICTION_SCAN_LIMIT = 16;
+    private static final long INVOICE_SIZE = 112;
+    private static final long COMPANY_SIZE = 48;
+    private static final long ENTRY_SIZE = 136;
+    private static final long STRING_SIZE = 40;
+
+    // Reads only look invoices up and mark them as referenced, so cache hits never take a lock.
+    private final Map<Long, CachedInvoice> invoices = new ConcurrentHashMap<>();
+    private final Map<String, Long> idsByNumber = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final Lock writeLock = new ReentrantLock();
+    private final LinkedHashMap<Long, CachedInvoice> evictionQueue = new LinkedHashMap<>();
+    private final long memoryBudget;
+    private final int hotIssuedDays;
+    private volatile long residentBytes;
+    private volatile long evictions;
+
+    public InvoiceCache(long memoryBudget, int hotIssuedDays) {
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("Memory budget must be greater than zero.");
+        }
+        if (hotIssuedDays < 0) {
+            throw new IllegalArgumentException("Number of hot issued days cannot be negative.");
+        }
+        this.memoryBudget = memoryBudget;
+        this.hotIssuedDays = hotIssuedDays;
+    }
+
+    public Invoice get(Long id) {
+        return hit(invoices.get(id));
+    }
+
+    public Invoice getByNumber(String number) {
+        Long id = idsByNumber.get(number);
+        CachedInvoice cachedInvoice = id == null ? null : invoices.get(id);
+        return hit(cachedInvoice != null && number.equals(cachedInvoice.invoice.getNumber()) ? cachedInvoice : null);
+    }
+
+    public void put(Invoice invoice) {
+        if (invoice == null || invoice.getId() == null) {
+            throw new IllegalArgumentException("Invoice and its id cannot be null.");
+        }
+        writeLock.lock();
+        try {
+            add(invoice);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void putIfAbsent(Invoice invoice) {
+        if (invoice == null || invoice.getId() == null) {
+            throw new IllegalArgumentException("Invoice and its id cannot be null.");
+        }
+        writeLock.lock();
+        try {
+            if (!invoices.containsKey(invoice.getId())) {
+                add(invoice);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        writeLock.lock();
+        try {
+            removeCached(id);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void clear() {
+        writeLock.lock();
+        try {
+            invoices.clear();
+            idsByNumber.clear();
+            evictionQueue.clear();
+            residentBytes = 0;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public CacheStats getStats() {
+        return CacheStats.builder()
+            .hits(hits.sum())
+            .misses(misses.sum())
+            .evictions(evictions)
+            .residentInvoices(invoices.size())
+            .residentBytes(residentBytes)
+            .memoryBudget(memoryBudget)
+            .build();
+    }
+
+    private Invoice hit(CachedInvoice cachedInvoice) {
+        if (cachedInvoice == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (!cachedInvoice.referenced) {
+            cachedInvoice.referenced = true;
+        }
+        return cachedInvoice.invoice;
+    }
+
+    private void add(Invoice invoice) {
+        removeCached(invoice.getId());
+        long size = estimateSize(invoice);
+        if (size > memoryBudget) {
+            return;
+        }
+        CachedInvoice cachedInvoice = new CachedInvoice(invoice, size);
+        evictionQueue.put(invoice.getId(), cachedInvoice);
+        invoices.put(invoice.getId(), cachedInvoice);
+        if (invoice.getNumber() != null) {
+            idsByNumber.put(invoice.getNumber(), invoice.getId());
+        }
+        residentBytes += size;
+        evictIfNeeded();
+    }
+
+    private void removeCached(Long id) {
+        CachedInvoice removedInvoice = evictionQueue.remove(id);
+        if (removedInvoice != null) {
+            invoices.remove(id);
+            if (removedInvoice.invoice.getNumber() != null) {
+                idsByNumber.remove(removedInvoice.invoice.getNumber(), id);
+            }
+            residentBytes -= removedInvoice.size;
+        }
+    }
+
+    private void evictIfNeeded() {
+        LocalDate hotSince = LocalDate.now().minusDays(hotIssuedDays);
+        while (residentBytes > memoryBudget) {
+            removeCached(nextVictim(hotSince).invoice.getId());
+            evictions++;
+        }
+    }
+
+    private CachedInvoice nextVictim(LocalDate hotSince) {
+        // Invoices read or issued recently are moved to the back of the queue for a second chance, but the scan never covers the whole cache.
+        for (int scanned = 1; scanned < EVICTION_SCAN_LIMIT; scanned++) {
+            CachedInvoice candidate = evictionQueue.values().iterator().next();
+            if (!candidate.referenced && !isHot(candidate.invoice, hotSince)) {
+                return candidate;
+            }
+            candidate.referenced = false;
+            evictionQueue.remove(candidate.invoice.getId());
+            evictionQueue.put(candidate.invoice.getId(), candidate);
+        }
+        return evictionQueue.values().iterator().next();
+    }
+
+    private static boolean isHot(Invoice invoice, LocalDate hotSince) {
+        return invoice.getIssuedDate() != null && !invoice.getIssuedDate().isBefore(hotSince);
+    }
+
+    static long estimateSize(Invoice invoice) {
+        long size = INVOICE_SIZE + estimateSize(invoice.getNumber()) + estimateSize(invoice.getSeller()) + estimateSize(invoice.getBuyer());
+        List<InvoiceEntry> entries = invoice.getEntries();
+        if (entries != null) {
+            for (InvoiceEntry entry : entries) {
+                size += ENTRY_SIZE + estimateSize(entry.getDescription());
+            }
+        }
+        return size;
+    }
+
+    private static long estimateSize(Company company) {
+        if (company == null) {
+            return 0;
+        }
+        return COMPANY_SIZE + estimateSize(company.getName()) + estimateSize(company.getAddress()) + estimateSize(company.getTaxId())
+            + estimateSize(company.getAccountNumber()) + estimateSize(company.getPhoneNumber()) + estimateSize(company.getEmail());
+    }
+
+    private static long estimateSize(String value) {
+        return value == null ? 0 : STRING_SIZE + value.length();
+    }
+
+    private static final class CachedInvoice {
+
+        private final Invoice invoice;
+        private final long size;
+        private volatile boolean referenced;
+
+        private CachedInvoice(Invoice invoice, long size) {
+            this.invoice = invoice;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package pl.coderstrust.database.memory;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import pl.coderstrust.database.InvoiceTotalsCalculator;
+import pl.coderstrust.model.Invoice;
+import pl.coderstrust.model.InvoiceEntry;
+import pl.coderstrust.model.InvoiceTotals;
+import pl.coderstrust.model.ReportGrouping;
+import pl.coderstrust.model.Vat;
+
+public class InvoiceEntryColumns {
+
+    private static final int STRIPE_BITS = 4;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int PENDING_CHANGES_LIMIT = 1024;
+    private static final int MIN_COMPACTION_SIZE = 1024;
+    private static final int NO_KEY = -1;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final Vat[] VAT_RATES = Vat.values();
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final Map<String, Integer> companyKeys = new HashMap<>();
+    private final List<String> companies = new ArrayList<>();
+
+    public InvoiceEntryColumns() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    public void put(Invoice invoice) {
+        if (invoice == null || invoice.getId() == null) {
+            throw new IllegalArgumentException("Invoice and its id cannot be null.");
+        }
+        stripe(invoice.getId()).record(new PendingChange(invoice.getId(), invoice));
+    }
+
+    public void remove(Long id) {
+        if (id == null) {
+            throw new IllegalArgumentException("Invoice id cannot be null.");
+        }
+        stripe(id).record(new PendingChange(id, null));
+    }
+
+    public void applyPendingChanges() {
+        for (Stripe stripe : stripes) {
+            if (stripe.pendingCount.get() >= PENDING_CHANGES_LIMIT) {
+                stripe.tryApplyPendingChanges();
+            }
+        }
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    public int rowCount() {
+        int rowCount = 0;
+        for (Stripe stripe : stripes) {
+            rowCount += stripe.rowCount();
+        }
+        return rowCount;
+    }
+
+    public List<InvoiceTotals> totals(ReportGrouping grouping, LocalDate from, LocalDate to) {
+        if (grouping == null) {
+            throw new IllegalArgumentException("Report grouping cannot be null.");
+        }
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Date range bounds cannot be null.");
+        }
+        if (from.isAfter(to)) {
+            return new ArrayList<>();
+        }
+        // Changes recorded so far are applied first, so every company they refer to already has its group.
+        Arrays.stream(stripes).parallel().forEach(Stripe::applyPendingChanges);
+        int fromMonth = monthKey(from);
+        int groups = grouping == ReportGrouping.VAT_RATE ? VAT_RATES.length : grouping == ReportGrouping.MONTH ? monthKey(to) - fromMonth + 1 : companyCount();
+        int firstDay = Math.toIntExact(from.toEpochDay());
+        int lastDay = Math.toIntExact(to.toEpochDay());
+        Accumulator accumulator = Arrays.stream(stripes)
+            .parallel()
+            .map(stripe -> stripe.accumulate(grouping, groups, fromMonth, firstDay, lastDay))
+            .reduce(Accumulator::merge)
+            .orElseGet(() -> new Accumulator(groups));
+        return IntStream.range(0, groups)
+            .filter(group -> accumulator.entries[group] > 0)
+            .mapToObj(group -> InvoiceTotals.builder()
+                .group(groupLabel(grouping, group, fromMonth))
+                .entries(accumulator.entries[group])
+                .quantity(accumulator.quantities[group])
+                .netValue(BigDecimal.valueOf(accumulator.netValues[group], InvoiceTotalsCalculator.AMOUNT_SCALE))
+                .grossValue(BigDecimal.valueOf(accumulator.grossValues[group], InvoiceTotalsCalculator.AMOUNT_SCALE))
+                .build())
+            .sorted(InvoiceTotalsCalculator.order(grouping))
+            .collect(Collectors.toList());
+    }
+
+    private String groupLabel(ReportGrouping grouping, int group, int fromMonth) {
+        if (grouping == ReportGrouping.VAT_RATE) {
+            return VAT_RATES[group].name();
+        }
+        if (grouping == ReportGrouping.MONTH) {
+            int month = fromMonth + group;
+            return YearMonth.of(Math.floorDiv(month, 12), Math.floorMod(month, 12) + 1).toString();
+        }
+        synchronized (companies) {
+            return companies.get(group);
+        }
+    }
+
+    private int companyKey(String company) {
+        if (company == null) {
+            return NO_KEY;
+        }
+        synchronized (companies) {
+            return companyKeys.computeIfAbsent(company, key -> {
+                companies.add(key);
+                return companies.size() - 1;
+            });
+        }
+    }
+
+    private int companyCount() {
+        synchronized (companies) {
+            return companies.size();
+        }
+    }
+
+    private Stripe stripe(long id) {
+        return stripes[(int) ((id * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - STRIPE_BITS))];
+    }
+
+    private static int monthKey(LocalDate date) {
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+
+    private final class Stripe {
+
+        // Writers only append here, rows are rebuilt from these changes by whoever holds the stripe lock next.
+        private final Queue<PendingChange> pendingChanges = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingCount = new AtomicInteger();
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final LongLongHashMap rowsByInvoice = new LongLongHashMap();
+        private final BitSet removedRows = new BitSet();
+        private long[] invoiceIds = new long[INITIAL_CAPACITY];
+        private long[] netValues = new long[INITIAL_CAPACITY];
+        private long[] grossValues = new long[INITIAL_CAPACITY];
+        private long[] quantities = new long[INITIAL_CAPACITY];
+        private byte[] vatRates = new byte[INITIAL_CAPACITY];
+        private int[] issuedDates = new int[INITIAL_CAPACITY];
+        private int[] issuedMonths = new int[INITIAL_CAPACITY];
+        private int[] sellers = new int[INITIAL_CAPACITY];
+        private int[] buyers = new int[INITIAL_CAPACITY];
+        private int size;
+        private int removedCount;
+
+        private void record(PendingChange change) {
+            pendingChanges.add(change);
+            pendingCount.incrementAndGet();
+        }
+
+        private void tryApplyPendingChanges() {
+            if (lock.writeLock().tryLock()) {
+                try {
+                    applyRecordedChanges();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+
+        private void applyPendingChanges() {
+            lock.writeLock().lock();
+            try {
+                applyRecordedChanges();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void clear() {
+            lock.writeLock().lock();
+            try {
+                applyRecordedChanges();
+                rowsByInvoice.clear();
+                removedRows.clear();
+                size = 0;
+                removedCount = 0;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private int rowCount() {
+            lock.writeLock().lock();
+            try {
+                applyRecordedChanges();
+                return size - removedCount;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private Accumulator accumulate(ReportGrouping grouping, int groups, int fromMonth, int firstDay, int lastDay) {
+            lock.readLock().lock();
+            try {
+                Accumulator accumulator = new Accumulator(groups);
+                IntUnaryOperator groupOfRow = groupOfRow(grouping, fromMonth);
+                for (int row = 0; row < size; row++) {
+                    if (issuedDates[row] < firstDay || issuedDates[row] > lastDay || removedRows.get(row)) {
+                        continue;
+                    }
+                    int group = groupOfRow.applyAsInt(row);
+                    if (group >= 0 && group < groups) {
+                        accumulator.entries[group]++;
+                        accumulator.quantities[group] += quantities[row];
+                        accumulator.netValues[group] += netValues[row];
+                        accumulator.grossValues[group] += grossValues[row];
+                    }
+                }
+                return accumulator;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private IntUnaryOperator groupOfRow(ReportGrouping grouping, int fromMonth) {
+            if (grouping == ReportGrouping.VAT_RATE) {
+                return row -> vatRates[row];
+            }
+            if (grouping == ReportGrouping.MONTH) {
+                return row -> issuedMonths[row] - fromMonth;
+            }
+            int[] companyColumn = grouping == ReportGrouping.SELLER ? sellers : buyers;
+            return row -> companyColumn[row];
+        }
+
+        private void applyRecordedChanges() {
+            PendingChange change = pendingChanges.poll();
+            while (change != null) {
+                pendingCount.decrementAndGet();
+                removeRows(change.id);
+                if (change.invoice != null) {
+                    addRows(change.invoice);
+                }
+                change = pendingChanges.poll();
+            }
+            if (size >= MIN_COMPACTION_SIZE && removedCount > size / 2) {
+                compact();
+            }
+        }
+
+        private void addRows(Invoice invoice) {
+            List<InvoiceEntry> entries = invoice.getEntries() == null ? List.of() : invoice.getEntries();
+            if (entries.isEmpty()) {
+                return;
+            }
+            ensureCapacity(size + entries.size());
+            rowsByInvoice.put(invoice.getId(), rows(size, entries.size()));
+            int issuedDate = invoice.getIssuedDate() == null ? NO_DATE : Math.toIntExact(invoice.getIssuedDate().toEpochDay());
+            int issuedMonth = invoice.getIssuedDate() == null ? NO_DATE : monthKey(invoice.getIssuedDate());
+            int seller = companyKey(InvoiceTotalsCalculator.companyGroup(invoice.getSeller()));
+            int buyer = companyKey(InvoiceTotalsCalculator.companyGroup(invoice.getBuyer()));
+            for (InvoiceEntry entry : entries) {
+                invoiceIds[size] = invoice.getId();
+                netValues[size] = InvoiceTotalsCalculator.toMinorUnits(entry.getNetValue());
+                grossValues[size] = InvoiceTotalsCalculator.toMinorUnits(entry.getGrossValue());
+                quantities[size] = entry.getQuantity() == null ? 0 : entry.getQuantity();
+                vatRates[size] = (byte) (entry.getVatRate() == null ? NO_KEY : entry.getVatRate().ordinal());
+                issuedDates[size] = issuedDate;
+                issuedMonths[size] = issuedMonth;
+                sellers[size] = seller;
+                buyers[size] = buyer;
+                size++;
+            }
+        }
+
+        private void removeRows(long id) {
+            long rows = rowsByInvoice.remove(id);
+            if (rows != LongLongHashMap.NO_VALUE) {
+                int firstRow = (int) (rows >>> Integer.SIZE);
+                int rowCount = (int) rows;
+                removedRows.set(firstRow, firstRow + rowCount);
+                removedCount += rowCount;
+            }
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= invoiceIds.length) {
+                return;
+            }
+            int newCapacity = Math.max(capacity, invoiceIds.length * 2);
+            invoiceIds = Arrays.copyOf(invoiceIds, newCapacity);
+            netValues = Arrays.copyOf(netValues, newCapacity);
+            grossValues = Arrays.copyOf(grossValues, newCapacity);
+            quantities = Arrays.copyOf(quantities, newCapacity);
+            vatRates = Arrays.copyOf(vatRates, newCapacity);
+            issuedDates = Arrays.copyOf(issuedDates, newCapacity);
+            issuedMonths = Arrays.copyOf(issuedMonths, newCapacity);
+            sellers = Arrays.copyOf(sellers, newCapacity);
+            buyers = Arrays.copyOf(buyers, newCapacity);
+        }
+
+        private void compact() {
+            int live = 0;
+            int firstRow = 0;
+            rowsByInvoice.clear();
+            for (int row = 0; row < size; row++) {
+                if (removedRows.get(row)) {
+                    continue;
+                }
+                invoiceIds[live] = invoiceIds[row];
+                netValues[live] = netValues[row];
+                grossValues[live] = grossValues[row];
+                quantities[live] = quantities[row];
+                vatRates[live] = vatRates[row];
+                issuedDates[live] = issuedDates[row];
+                issuedMonths[live] = issuedMonths[row];
+                sellers[live] = sellers[row];
+                buyers[live] = buyers[row];
+                if (live > 0 && invoiceIds[live - 1] != invoiceIds[live]) {
+                    firstRow = live;
+                }
+                live++;
+                rowsByInvoice.put(invoiceIds[firstRow], rows(firstRow, live - firstRow));
+            }
+            removedRows.clear();
+            size = live;
+            removedCount = 0;
+        }
+
+        private long rows(int firstRow, int rowCount) {
+            return (long) firstRow << Integer.SIZE | rowCount;
+        }
+    }
+
+    private static final class PendingChange {
+
+        private final long id;
+        private final Invoice invoice;
+
+        private PendingChange(long id, Invoice invoice) {
+            this.id = id;
+            this.invoice = invoice;
+        }
+    }
+
+    private static final class Accumulator {
+
+        private final long[] entries;
+        private final long[] quantities;
+        private final long[] netValues;
+        private final long[] grossValues;
+
+        private Accumulator(int groups) {
+            entries = new long[groups];
+            quantities = new long[groups];
+            netValues = new long[groups];
+            grossValues = new long[groups];
+        }
+
+        private Accumulator merge(Accumulator other) {
+            for (int group = 0; group < entries.length; group++) {
+                entries[group] += other.entries[group];
+                quantities[group] += other.quantities[group];
+                netValues[group] += other.netValues[group];
+                grossValues[group] += other.grossValues[group];
+            }
+            return this;
+        }
+    }
+}
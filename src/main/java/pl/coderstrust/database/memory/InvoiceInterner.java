@@ -0,0 +1,57 @@
+package pl.coderstrust.database.memory;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import pl.coderstrust.model.Company;
+import pl.coderstrust.model.Invoice;
+import pl.coderstrust.model.InvoiceEntry;
+
+public class InvoiceInterner {
+
+    private final Interner<Company> companies = new Interner<>();
+    private final Interner<InvoiceEntry> entries = new Interner<>();
+    private final Interner<String> strings = new Interner<>();
+
+    public Invoice intern(Invoice invoice) {
+        if (invoice == null) {
+            return null;
+        }
+        return invoice.toBuilder()
+            .buyer(intern(invoice.getBuyer()))
+            .seller(intern(invoice.getSeller()))
+            .entries(internEntries(invoice.getEntries()))
+            .build();
+    }
+
+    public Company intern(Company company) {
+        return companies.intern(company, value -> value.toBuilder()
+            .name(strings.intern(value.getName()))
+            .address(strings.intern(value.getAddress()))
+            .taxId(strings.intern(value.getTaxId()))
+            .accountNumber(strings.intern(value.getAccountNumber()))
+            .phoneNumber(strings.intern(value.getPhoneNumber()))
+            .email(strings.intern(value.getEmail()))
+            .build());
+    }
+
+    public int companyCount() {
+        return companies.size();
+    }
+
+    public int entryCount() {
+        return entries.size();
+    }
+
+    public int stringCount() {
+        return strings.size();
+    }
+
+    private List<InvoiceEntry> internEntries(List<InvoiceEntry> invoiceEntries) {
+        if (invoiceEntries == null) {
+            return null;
+        }
+        return invoiceEntries.stream()
+            .map(entry -> entries.intern(entry, value -> value.toBuilder().description(strings.intern(value.getDescription())).build()))
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,148 @@
+package pl.coderstrust.database.memory;
+
+import java.util.Arrays;
+
+public class LongLongHashMap {
+
+    public static final long NO_VALUE = -1;
+
+    private static final int MIN_CAPACITY = 16;
+    private static final double LOAD_FACTOR = 0.6;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private int resizeThreshold;
+
+    public LongLongHashMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    public long get(long key) {
+        int slot = find(key);
+        return slot < 0 ? NO_VALUE : values[slot];
+    }
+
+    public boolean containsKey(long key) {
+        return find(key) >= 0;
+    }
+
+    public long put(long key, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value cannot be negative.");
+        }
+        int slot = slot(key);
+        while (values[slot] != NO_VALUE) {
+            if (keys[slot] == key) {
+                long previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = next(slot);
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            resize(keys.length * 2);
+        }
+        return NO_VALUE;
+    }
+
+    public boolean replace(long key, long expectedValue, long value) {
+        int slot = find(key);
+        if (slot < 0 || values[slot] != expectedValue) {
+            return false;
+        }
+        values[slot] = value;
+        return true;
+    }
+
+    public long remove(long key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return NO_VALUE;
+        }
+        long previous = values[slot];
+        shiftBack(slot);
+        size--;
+        return previous;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long[] keys() {
+        long[] result = new long[size];
+        int position = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (values[slot] != NO_VALUE) {
+                result[position++] = keys[slot];
+            }
+        }
+        return result;
+    }
+
+    public void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+    }
+
+    private int find(long key) {
+        int slot = slot(key);
+        while (values[slot] != NO_VALUE) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = next(slot);
+        }
+        return -1;
+    }
+
+    private void shiftBack(int emptied) {
+        int gap = emptied;
+        int slot = next(gap);
+        while (values[slot] != NO_VALUE) {
+            int home = slot(keys[slot]);
+            if ((slot > gap && (home <= gap || home > slot)) || (slot < gap && home <= gap && home > slot)) {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+            slot = next(slot);
+        }
+        values[gap] = NO_VALUE;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldValues[slot] != NO_VALUE) {
+                int target = slot(oldKeys[slot]);
+                while (values[target] != NO_VALUE) {
+                    target = next(target);
+                }
+                keys[target] = oldKeys[slot];
+                values[target] = oldValues[slot];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(values, NO_VALUE);
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & (keys.length - 1);
+    }
+
+    private int next(int slot) {
+        return (slot + 1) & (keys.length - 1);
+    }
+}
@@ -0,0 +1,333 @@
+package pl.coderstrust.database.memory;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+public class LongPairIndex {
+
+    private static final int STRIPE_BITS = 6;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final int CHUNK_SIZE = 512;
+    private static final int INITIAL_CHUNK_CAPACITY = 8;
+    private static final int BATCH_SIZE = 64;
+    private static final Comparator<Cursor> CURSOR_ORDER = Comparator.comparingLong(Cursor::major).thenComparingLong(Cursor::minor);
+
+    private final boolean stripedByMajor;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public LongPairIndex(boolean stripedByMajor) {
+        this.stripedByMajor = stripedByMajor;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    public void add(long major, long minor) {
+        stripe(major, minor).add(major, minor, false);
+    }
+
+    public boolean addUnlessMajorTaken(long major, long minor) {
+        if (!stripedByMajor) {
+            throw new IllegalStateException("Only an index striped by major keeps pairs sharing a major under one lock.");
+        }
+        return stripe(major, minor).add(major, minor, true);
+    }
+
+    public boolean remove(long major, long minor) {
+        return stripe(major, minor).remove(major, minor);
+    }
+
+    public LongStream minors(long major) {
+        return minors(major, Long.MIN_VALUE, major);
+    }
+
+    public LongStream minors(long fromMajor, long fromMinor, long toMajor) {
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(CURSOR_ORDER);
+        if (fromMajor <= toMajor) {
+            // Stripes are sorted on their own, so pairs are merged on read to keep the whole range in order.
+            if (stripedByMajor && fromMajor == toMajor) {
+                addCursor(cursors, stripe(fromMajor, fromMinor), fromMajor, fromMinor, toMajor);
+            } else {
+                for (Stripe stripe : stripes) {
+                    addCursor(cursors, stripe, fromMajor, fromMinor, toMajor);
+                }
+            }
+        }
+        return StreamSupport.longStream(Spliterators.spliteratorUnknownSize(new MergingIterator(cursors), Spliterator.ORDERED), false);
+    }
+
+    private static void addCursor(PriorityQueue<Cursor> cursors, Stripe stripe, long fromMajor, long fromMinor, long toMajor) {
+        Cursor cursor = new Cursor(stripe, toMajor);
+        if (cursor.fill(fromMajor, fromMinor, true)) {
+            cursors.add(cursor);
+        }
+    }
+
+    private Stripe stripe(long major, long minor) {
+        long hash = (stripedByMajor ? major : minor) * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (hash >>> (Long.SIZE - STRIPE_BITS))];
+    }
+
+    private static int compare(long major, long minor, long otherMajor, long otherMinor) {
+        int result = Long.compare(major, otherMajor);
+        return result != 0 ? result : Long.compare(minor, otherMinor);
+    }
+
+    private static final class Stripe {
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private Chunk[] chunks = {new Chunk()};
+        private int chunkCount = 1;
+
+        private boolean add(long major, long minor, boolean uniqueMajor) {
+            lock.writeLock().lock();
+            try {
+                int chunkIndex = chunkIndex(major, minor);
+                Chunk chunk = chunks[chunkIndex];
+                int position = chunk.search(major, minor, true);
+                if (position < chunk.size && chunk.majors[position] == major && chunk.minors[position] == minor) {
+                    return true;
+                }
+                // Pairs sharing a major sit next to each other, so only the neighbours of the insertion point can take it.
+                if (uniqueMajor && (hasMajor(chunkIndex, position - 1, major) || hasMajor(chunkIndex, position, major))) {
+                    return false;
+                }
+                if (chunk.size == CHUNK_SIZE) {
+                    Chunk upperChunk = chunk.split();
+                    insertChunk(chunkIndex + 1, upperChunk);
+                    if (position > chunk.size) {
+                        position -= chunk.size;
+                        chunk = upperChunk;
+                    }
+                }
+                chunk.insert(position, major, minor);
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private boolean remove(long major, long minor) {
+            lock.writeLock().lock();
+            try {
+                int chunkIndex = chunkIndex(major, minor);
+                Chunk chunk = chunks[chunkIndex];
+                int position = chunk.search(major, minor, true);
+                if (position == chunk.size || chunk.majors[position] != major || chunk.minors[position] != minor) {
+                    return false;
+                }
+                chunk.delete(position);
+                if (chunk.size == 0 && chunkCount > 1) {
+                    removeChunk(chunkIndex);
+                } else if (chunkIndex + 1 < chunkCount && chunk.size + chunks[chunkIndex + 1].size <= CHUNK_SIZE / 2) {
+                    chunk.append(chunks[chunkIndex + 1]);
+                    removeChunk(chunkIndex + 1);
+                }
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private int copy(long major, long minor, boolean inclusive, long toMajor, long[] pairs) {
+            lock.readLock().lock();
+            try {
+                int chunkIndex = chunkIndex(major, minor);
+                int position = chunks[chunkIndex].search(major, minor, inclusive);
+                int count = 0;
+                while (chunkIndex < chunkCount && count < pairs.length / 2) {
+                    Chunk chunk = chunks[chunkIndex];
+                    for (; position < chunk.size && count < pairs.length / 2; position++, count++) {
+                        if (chunk.majors[position] > toMajor) {
+                            return count;
+                        }
+                        pairs[2 * count] = chunk.majors[position];
+                        pairs[2 * count + 1] = chunk.minors[position];
+                    }
+                    if (position == chunk.size) {
+                        chunkIndex++;
+                        position = 0;
+                    }
+                }
+                return count;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private int chunkIndex(long major, long minor) {
+            int result = 0;
+            int low = 1;
+            int high = chunkCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (compare(chunks[middle].majors[0], chunks[middle].minors[0], major, minor) <= 0) {
+                    result = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return result;
+        }
+
+        private boolean hasMajor(int chunkIndex, int position, long major) {
+            if (position < 0) {
+                return chunkIndex > 0 && chunks[chunkIndex - 1].majors[chunks[chunkIndex - 1].size - 1] == major;
+            }
+            if (position == chunks[chunkIndex].size) {
+                return chunkIndex + 1 < chunkCount && chunks[chunkIndex + 1].majors[0] == major;
+            }
+            return chunks[chunkIndex].majors[position] == major;
+        }
+
+        private void insertChunk(int chunkIndex, Chunk chunk) {
+            if (chunkCount == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunkCount * 2);
+            }
+            System.arraycopy(chunks, chunkIndex, chunks, chunkIndex + 1, chunkCount - chunkIndex);
+            chunks[chunkIndex] = chunk;
+            chunkCount++;
+        }
+
+        private void removeChunk(int chunkIndex) {
+            System.arraycopy(chunks, chunkIndex + 1, chunks, chunkIndex, chunkCount - chunkIndex - 1);
+            chunks[--chunkCount] = null;
+        }
+    }
+
+    private static final class Chunk {
+
+        private long[] majors = new long[INITIAL_CHUNK_CAPACITY];
+        private long[] minors = new long[INITIAL_CHUNK_CAPACITY];
+        private int size;
+
+        private int search(long major, long minor, boolean inclusive) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int result = compare(majors[middle], minors[middle], major, minor);
+                if (result < 0 || (result == 0 && !inclusive)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private void insert(int position, long major, long minor) {
+            if (size == majors.length) {
+                grow(Math.min(CHUNK_SIZE, size * 2));
+            }
+            System.arraycopy(majors, position, majors, position + 1, size - position);
+            System.arraycopy(minors, position, minors, position + 1, size - position);
+            majors[position] = major;
+            minors[position] = minor;
+            size++;
+        }
+
+        private void delete(int position) {
+            System.arraycopy(majors, position + 1, majors, position, size - position - 1);
+            System.arraycopy(minors, position + 1, minors, position, size - position - 1);
+            size--;
+        }
+
+        private Chunk split() {
+            Chunk upperChunk = new Chunk();
+            int half = size / 2;
+            upperChunk.grow(CHUNK_SIZE);
+            upperChunk.size = size - half;
+            System.arraycopy(majors, half, upperChunk.majors, 0, upperChunk.size);
+            System.arraycopy(minors, half, upperChunk.minors, 0, upperChunk.size);
+            size = half;
+            return upperChunk;
+        }
+
+        private void append(Chunk chunk) {
+            if (size + chunk.size > majors.length) {
+                grow(CHUNK_SIZE);
+            }
+            System.arraycopy(chunk.majors, 0, majors, size, chunk.size);
+            System.arraycopy(chunk.minors, 0, minors, size, chunk.size);
+            size += chunk.size;
+        }
+
+        private void grow(int capacity) {
+            majors = Arrays.copyOf(majors, capacity);
+            minors = Arrays.copyOf(minors, capacity);
+        }
+    }
+
+    private static final class Cursor {
+
+        private final Stripe stripe;
+        private final long toMajor;
+        private final long[] pairs = new long[2 * BATCH_SIZE];
+        private int count;
+        private int position;
+
+        private Cursor(Stripe stripe, long toMajor) {
+            this.stripe = stripe;
+            this.toMajor = toMajor;
+        }
+
+        private boolean fill(long major, long minor, boolean inclusive) {
+            count = stripe.copy(major, minor, inclusive, toMajor, pairs);
+            position = 0;
+            return count > 0;
+        }
+
+        private boolean advance() {
+            long major = major();
+            long minor = minor();
+            position++;
+            return position < count || (count == BATCH_SIZE && fill(major, minor, false));
+        }
+
+        private long major() {
+            return pairs[2 * position];
+        }
+
+        private long minor() {
+            return pairs[2 * position + 1];
+        }
+    }
+
+    private static final class MergingIterator implements PrimitiveIterator.OfLong {
+
+        private final PriorityQueue<Cursor> cursors;
+
+        private MergingIterator(PriorityQueue<Cursor> cursors) {
+            this.cursors = cursors;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !cursors.isEmpty();
+        }
+
+        @Override
+        public long nextLong() {
+            Cursor cursor = cursors.poll();
+            if (cursor == null) {
+                throw new NoSuchElementException();
+            }
+            long minor = cursor.minor();
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+            return minor;
+        }
+    }
+}
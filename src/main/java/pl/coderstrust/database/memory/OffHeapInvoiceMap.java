@@ -0,0 +1,482 @@
+package pl.coderstrust.database.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.coderstrust.model.Invoice;
+
+public class OffHeapInvoiceMap extends AbstractMap<Long, Invoice> implements ConcurrentMap<Long, Invoice> {
+
+    public static final int MAX_SLAB_SIZE = 1024 * 1024 * 1024;
+
+    private static final int RECORD_HEADER_SIZE = Long.BYTES + Integer.BYTES;
+    private static final int STRIPES = 64;
+    private static final double COMPACTION_LIVE_RATIO = 0.5;
+
+    private static Logger log = LoggerFactory.getLogger(OffHeapInvoiceMap.class);
+
+    private final ObjectMapper mapper;
+    private final int slabSize;
+    private final LongLongHashMap index = new LongLongHashMap();
+    private final ReadWriteLock indexLock = new ReentrantReadWriteLock();
+    private final ReadWriteLock compactionLock = new ReentrantReadWriteLock();
+    private final Lock[] stripes = new Lock[STRIPES];
+    private final Map<Integer, Slab> slabs = new ConcurrentHashMap<>();
+    private final Object allocationLock = new Object();
+    private Slab activeSlab;
+    private int nextSlabId;
+    private volatile boolean compactionPending;
+
+    public OffHeapInvoiceMap(int slabSize) {
+        if (slabSize <= RECORD_HEADER_SIZE || slabSize > MAX_SLAB_SIZE) {
+            throw new IllegalArgumentException(String.format("Slab size must be greater than %s and not greater than %s bytes.", RECORD_HEADER_SIZE, MAX_SLAB_SIZE));
+        }
+        this.slabSize = slabSize;
+        this.mapper = new ObjectMapper(new SmileFactory());
+        this.mapper.registerModule(new JavaTimeModule());
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public Invoice get(Object key) {
+        if (!(key instanceof Long)) {
+            return null;
+        }
+        while (true) {
+            long location = locate((Long) key);
+            if (location == LongLongHashMap.NO_VALUE) {
+                return null;
+            }
+            Slab slab = slabs.get(slabId(location));
+            if (slab != null) {
+                return decode(slab, position(location));
+            }
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Long && locate((Long) key) != LongLongHashMap.NO_VALUE;
+    }
+
+    @Override
+    public int size() {
+        indexLock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Invoice put(Long key, Invoice value) {
+        return computeValue(key, (id, previous) -> value, true);
+    }
+
+    @Override
+    public Invoice putIfAbsent(Long key, Invoice value) {
+        Lock stripe = lock(key);
+        try {
+            Invoice previous = get(key);
+            if (previous == null) {
+                store(key, value);
+            }
+            return previous;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public Invoice replace(Long key, Invoice value) {
+        Objects.requireNonNull(value);
+        return computeIfPresent(key, (id, previous) -> value) == null ? null : value;
+    }
+
+    @Override
+    public boolean replace(Long key, Invoice oldValue, Invoice newValue) {
+        Objects.requireNonNull(newValue);
+        Lock stripe = lock(key);
+        try {
+            if (!Objects.equals(get(key), oldValue)) {
+                return false;
+            }
+            store(key, newValue);
+            return true;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public Invoice compute(Long key, BiFunction<? super Long, ? super Invoice, ? extends Invoice> remappingFunction) {
+        return computeValue(key, remappingFunction, false);
+    }
+
+    @Override
+    public Invoice computeIfPresent(Long key, BiFunction<? super Long, ? super Invoice, ? extends Invoice> remappingFunction) {
+        Lock stripe = lock(key);
+        try {
+            Invoice previous = get(key);
+            if (previous == null) {
+                return null;
+            }
+            return update(key, previous, remappingFunction.apply(key, previous));
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public Invoice remove(Object key) {
+        if (!(key instanceof Long)) {
+            return null;
+        }
+        Lock stripe = lock((Long) key);
+        try {
+            Invoice previous = get(key);
+            if (previous != null) {
+                delete((Long) key);
+            }
+            return previous;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (!(key instanceof Long)) {
+            return false;
+        }
+        Lock stripe = lock((Long) key);
+        try {
+            Invoice previous = get(key);
+            if (previous == null || !previous.equals(value)) {
+                return false;
+            }
+            delete((Long) key);
+            return true;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (long key : keys()) {
+            remove(key);
+        }
+    }
+
+    @Override
+    public Set<Entry<Long, Invoice>> entrySet() {
+        return new EntrySet();
+    }
+
+    public long allocatedBytes() {
+        return slabs.values().stream().mapToLong(slab -> slab.buffer.capacity()).sum();
+    }
+
+    public long liveBytes() {
+        return slabs.values().stream().mapToLong(slab -> slab.liveBytes.get()).sum();
+    }
+
+    public int slabCount() {
+        return slabs.size();
+    }
+
+    private Invoice computeValue(Long key, BiFunction<? super Long, ? super Invoice, ? extends Invoice> remappingFunction, boolean returnPrevious) {
+        Lock stripe = lock(key);
+        try {
+            Invoice previous = get(key);
+            Invoice value = update(key, previous, remappingFunction.apply(key, previous));
+            return returnPrevious ? previous : value;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    private Invoice update(Long key, Invoice previous, Invoice value) {
+        if (value == null) {
+            delete(key);
+        } else if (value != previous) {
+            store(key, value);
+        }
+        return value;
+    }
+
+    private long[] keys() {
+        indexLock.readLock().lock();
+        try {
+            return index.keys();
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    private Lock lock(Long key) {
+        Lock stripe = stripes[Long.hashCode(key) & (STRIPES - 1)];
+        stripe.lock();
+        return stripe;
+    }
+
+    private long locate(long key) {
+        indexLock.readLock().lock();
+        try {
+            return index.get(key);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    private void store(long key, Invoice value) {
+        byte[] payload = encode(value);
+        long previous;
+        compactionLock.readLock().lock();
+        try {
+            long location = append(key, payload);
+            indexLock.writeLock().lock();
+            try {
+                previous = index.put(key, location);
+            } finally {
+                indexLock.writeLock().unlock();
+            }
+        } finally {
+            compactionLock.readLock().unlock();
+        }
+        release(previous);
+        if (compactionPending) {
+            compactSealedSlabs();
+        }
+    }
+
+    private void delete(long key) {
+        long previous;
+        indexLock.writeLock().lock();
+        try {
+            previous = index.remove(key);
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        release(previous);
+    }
+
+    private void release(long location) {
+        if (location == LongLongHashMap.NO_VALUE) {
+            return;
+        }
+        Slab slab = slabs.get(slabId(location));
+        if (slab != null) {
+            slab.liveBytes.addAndGet(-recordSize(slab, position(location)));
+        }
+    }
+
+    private long append(long key, byte[] payload) {
+        synchronized (allocationLock) {
+            int size = RECORD_HEADER_SIZE + payload.length;
+            if (activeSlab == null || activeSlab.remaining() < size) {
+                compactionPending = activeSlab != null;
+                allocateSlab(size);
+            }
+            return write(activeSlab, key, payload, 0, payload.length, true);
+        }
+    }
+
+    private long write(Slab slab, long key, Object source, int offset, int length, boolean live) {
+        int position = slab.position;
+        ByteBuffer target = slab.buffer.duplicate();
+        target.position(position);
+        target.putLong(key).putInt(length);
+        if (source instanceof byte[]) {
+            target.put((byte[]) source, offset, length);
+        } else {
+            ByteBuffer payload = ((ByteBuffer) source).duplicate();
+            payload.limit(offset + length).position(offset);
+            target.put(payload);
+        }
+        slab.position += RECORD_HEADER_SIZE + length;
+        if (live) {
+            slab.liveBytes.addAndGet(RECORD_HEADER_SIZE + length);
+        }
+        return location(slab.id, position);
+    }
+
+    private void allocateSlab(int minimumSize) {
+        Slab slab = new Slab(nextSlabId++, ByteBuffer.allocateDirect(Math.max(slabSize, minimumSize)));
+        slabs.put(slab.id, slab);
+        activeSlab = slab;
+    }
+
+    private void compactSealedSlabs() {
+        compactionLock.writeLock().lock();
+        try {
+            synchronized (allocationLock) {
+                compactionPending = false;
+                for (Slab slab : slabs.values()) {
+                    if (slab != activeSlab && slab.liveBytes.get() < slab.position * COMPACTION_LIVE_RATIO) {
+                        compact(slab);
+                    }
+                }
+            }
+        } finally {
+            compactionLock.writeLock().unlock();
+        }
+    }
+
+    private void compact(Slab slab) {
+        long reclaimed = slab.position - slab.liveBytes.get();
+        int position = 0;
+        while (position < slab.position) {
+            long key = slab.buffer.getLong(position);
+            int length = slab.buffer.getInt(position + Long.BYTES);
+            long location = location(slab.id, position);
+            if (locate(key) == location) {
+                if (activeSlab.remaining() < RECORD_HEADER_SIZE + length) {
+                    allocateSlab(RECORD_HEADER_SIZE + length);
+                }
+                long relocated = write(activeSlab, key, slab.buffer, position + RECORD_HEADER_SIZE, length, false);
+                if (relocate(key, location, relocated)) {
+                    activeSlab.liveBytes.addAndGet(RECORD_HEADER_SIZE + length);
+                }
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        slabs.remove(slab.id);
+        log.debug("Compacted off-heap slab {} reclaiming {} bytes.", slab.id, reclaimed);
+    }
+
+    private boolean relocate(long key, long from, long to) {
+        indexLock.writeLock().lock();
+        try {
+            return index.replace(key, from, to);
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    private byte[] encode(Invoice invoice) {
+        try {
+            return mapper.writeValueAsBytes(invoice);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Invoice decode(Slab slab, int position) {
+        ByteBuffer payload = slab.buffer.duplicate();
+        payload.limit(position + recordSize(slab, position)).position(position + RECORD_HEADER_SIZE);
+        try {
+            return mapper.readValue(new ByteBufferBackedInputStream(payload), Invoice.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int recordSize(Slab slab, int position) {
+        return RECORD_HEADER_SIZE + slab.buffer.getInt(position + Long.BYTES);
+    }
+
+    private static long location(int slabId, int position) {
+        return ((long) slabId << Integer.SIZE) | position;
+    }
+
+    private static int slabId(long location) {
+        return (int) (location >>> Integer.SIZE);
+    }
+
+    private static int position(long location) {
+        return (int) location;
+    }
+
+    private static final class Slab {
+
+        private final int id;
+        private final ByteBuffer buffer;
+        private final AtomicLong liveBytes = new AtomicLong(0);
+        private int position;
+
+        private Slab(int id, ByteBuffer buffer) {
+            this.id = id;
+            this.buffer = buffer;
+        }
+
+        private int remaining() {
+            return buffer.capacity() - position;
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<Long, Invoice>> {
+
+        @Override
+        public Iterator<Entry<Long, Invoice>> iterator() {
+            long[] keys = keys();
+            return new Iterator<>() {
+                private int position = 0;
+                private Entry<Long, Invoice> next;
+                private Long lastKey;
+
+                @Override
+                public boolean hasNext() {
+                    while (next == null && position < keys.length) {
+                        Invoice invoice = get(keys[position]);
+                        if (invoice != null) {
+                            next = new SimpleImmutableEntry<>(keys[position], invoice);
+                        }
+                        position++;
+                    }
+                    return next != null;
+                }
+
+                @Override
+                public Entry<Long, Invoice> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Entry<Long, Invoice> entry = next;
+                    lastKey = entry.getKey();
+                    next = null;
+                    return entry;
+                }
+
+                @Override
+                public void remove() {
+                    if (lastKey == null) {
+                        throw new IllegalStateException();
+                    }
+                    OffHeapInvoiceMap.this.remove(lastKey);
+                    lastKey = null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return OffHeapInvoiceMap.this.size();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package pl.coderstrust.database.memory;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Data
+public final class SnapshotManifest {
+
+    private static final int MAGIC = 0x494e564d;
+    private static final byte VERSION = 1;
+    private static final int SIZE = Integer.BYTES + 1 + 2 * Long.BYTES + Integer.BYTES + Long.BYTES;
+
+    private static Logger log = LoggerFactory.getLogger(SnapshotManifest.class);
+
+    private final long generation;
+    private final long nextId;
+    private final int parts;
+
+    public static Optional<SnapshotManifest> read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        try {
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.capacity() - Long.BYTES);
+            if (buffer.getInt() != MAGIC || buffer.get() != VERSION || buffer.getLong(buffer.capacity() - Long.BYTES) != crc.getValue()) {
+                log.warn("Ignoring invalid invoice snapshot manifest {}.", file);
+                return Optional.empty();
+            }
+            return Optional.of(new SnapshotManifest(buffer.getLong(), buffer.getLong(), buffer.getInt()));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            log.warn("Ignoring truncated invoice snapshot manifest {}.", file);
+            return Optional.empty();
+        }
+    }
+
+    public void write(Path file, Path tempFile) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE)
+            .putInt(MAGIC)
+            .put(VERSION)
+            .putLong(generation)
+            .putLong(nextId)
+            .putInt(parts);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putLong(crc.getValue());
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
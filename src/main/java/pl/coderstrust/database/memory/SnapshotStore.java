@@ -0,0 +1,288 @@
+package pl.coderstrust.database.memory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.coderstrust.database.file.LogFormat;
+import pl.coderstrust.database.file.LogRecord;
+import pl.coderstrust.database.file.LogRecordCodec;
+import pl.coderstrust.database.file.LogRecordCodecs;
+import pl.coderstrust.database.file.LogSegment;
+import pl.coderstrust.model.Invoice;
+
+public class SnapshotStore implements Closeable {
+
+    private static final String MANIFEST_FILE = "SNAPSHOT";
+    private static final String MANIFEST_TEMP_FILE = "SNAPSHOT.tmp";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String FILE_SUFFIX = ".log";
+    private static final int BATCH_SIZE = 512;
+
+    private static Logger log = LoggerFactory.getLogger(SnapshotStore.class);
+
+    private final Path directory;
+    private final LogRecordCodecs codecs;
+    private final LogRecordCodec codec;
+    private final Map<Long, Invoice> database;
+    private final AtomicLong nextId;
+    private final int snapshotParts;
+    private final boolean syncWrites;
+    private final Object journalLock = new Object();
+    private LogSegment journal;
+    private long generation;
+    private long snapshotGeneration;
+    private ScheduledExecutorService executor;
+
+    public SnapshotStore(Path directory, LogRecordCodecs codecs, Map<Long, Invoice> database, AtomicLong nextId, int snapshotParts, boolean syncWrites) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("Snapshot directory cannot be null.");
+        }
+        if (codecs == null) {
+            throw new IllegalArgumentException("Codecs cannot be null.");
+        }
+        if (database == null) {
+            throw new IllegalArgumentException("Database cannot be null.");
+        }
+        if (nextId == null) {
+            throw new IllegalArgumentException("Id counter cannot be null.");
+        }
+        if (snapshotParts <= 0) {
+            throw new IllegalArgumentException("Number of snapshot parts must be greater than zero.");
+        }
+        this.directory = directory;
+        this.codecs = codecs;
+        this.codec = codecs.get(LogFormat.BINARY);
+        this.database = database;
+        this.nextId = nextId;
+        this.snapshotParts = snapshotParts;
+        this.syncWrites = syncWrites;
+        Files.createDirectories(directory);
+    }
+
+    public synchronized void recover() throws IOException {
+        Optional<SnapshotManifest> manifest = SnapshotManifest.read(directory.resolve(MANIFEST_FILE));
+        if (manifest.isPresent()) {
+            loadSnapshot(manifest.get());
+            snapshotGeneration = manifest.get().getGeneration();
+            nextId.accumulateAndGet(manifest.get().getNextId(), Math::max);
+        }
+        TreeMap<Long, List<Path>> journals = files(JOURNAL_PREFIX);
+        for (Map.Entry<Long, List<Path>> entry : journals.tailMap(snapshotGeneration - 1).entrySet()) {
+            replayJournal(entry.getKey(), entry.getValue().get(0));
+        }
+        database.keySet().forEach(id -> nextId.accumulateAndGet(id, Math::max));
+        generation = Math.max(snapshotGeneration, journals.isEmpty() ? 0 : journals.lastKey());
+        synchronized (journalLock) {
+            journal = openJournal(++generation);
+        }
+        log.info("Recovered {} invoices from snapshot generation {} and its journals.", database.size(), snapshotGeneration);
+    }
+
+    public synchronized void start(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Snapshot interval must be greater than zero.");
+        }
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "in-memory-database-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::snapshotInBackground, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void append(LogRecord record) {
+        try {
+            byte[] bytes = codec.encode(record);
+            synchronized (journalLock) {
+                if (journal == null) {
+                    throw new IOException("Journal of in-memory database is not open.");
+                }
+                journal.append(bytes);
+                if (syncWrites) {
+                    journal.force();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized boolean snapshotIfNeeded() throws IOException {
+        synchronized (journalLock) {
+            if (journal == null || (snapshotGeneration == generation && journal.isEmpty())) {
+                return false;
+            }
+        }
+        snapshot();
+        return true;
+    }
+
+    public synchronized SnapshotManifest snapshot() throws IOException {
+        long snapshotId = rotateJournal();
+        SnapshotManifest manifest = new SnapshotManifest(snapshotId, nextId.get(), snapshotParts);
+        List<LogSegment> parts = new ArrayList<>(snapshotParts);
+        try {
+            for (int part = 0; part < snapshotParts; part++) {
+                Path path = snapshotPath(snapshotId, part);
+                Files.deleteIfExists(path);
+                parts.add(LogSegment.open(snapshotId, path, codecs, LogFormat.BINARY));
+            }
+            writeSnapshot(parts);
+            for (LogSegment part : parts) {
+                part.force();
+            }
+        } finally {
+            for (LogSegment part : parts) {
+                part.close();
+            }
+        }
+        manifest.write(directory.resolve(MANIFEST_FILE), directory.resolve(MANIFEST_TEMP_FILE));
+        snapshotGeneration = snapshotId;
+        deleteObsoleteFiles();
+        log.debug("In-memory database has been snapshotted as generation {}.", snapshotId);
+        return manifest;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        synchronized (journalLock) {
+            if (journal != null) {
+                journal.force();
+                journal.close();
+                journal = null;
+            }
+        }
+    }
+
+    private void loadSnapshot(SnapshotManifest manifest) throws IOException {
+        try {
+            IntStream parts = IntStream.range(0, manifest.getParts());
+            (database instanceof ConcurrentMap ? parts.parallel() : parts).forEach(part -> {
+                try (LogSegment segment = LogSegment.open(manifest.getGeneration(), existing(snapshotPath(manifest.getGeneration(), part)), codecs, LogFormat.BINARY)) {
+                    segment.scan((location, record) -> database.put(record.getId(), record.getInvoice()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        log.debug("Loaded {} invoices from {} parts of snapshot generation {}.", database.size(), manifest.getParts(), manifest.getGeneration());
+    }
+
+    private void replayJournal(long journalId, Path path) throws IOException {
+        try (LogSegment segment = LogSegment.open(journalId, path, codecs, LogFormat.BINARY)) {
+            segment.scan((location, record) -> {
+                if (record.isTombstone()) {
+                    database.remove(record.getId());
+                } else {
+                    database.put(record.getId(), record.getInvoice());
+                }
+                nextId.accumulateAndGet(record.getId(), Math::max);
+            });
+        }
+    }
+
+    private long rotateJournal() throws IOException {
+        LogSegment nextJournal = openJournal(generation + 1);
+        synchronized (journalLock) {
+            if (journal != null) {
+                journal.force();
+                journal.close();
+            }
+            journal = nextJournal;
+            return ++generation;
+        }
+    }
+
+    private void writeSnapshot(List<LogSegment> parts) throws IOException {
+        List<List<byte[]>> batches = new ArrayList<>(parts.size());
+        parts.forEach(part -> batches.add(new ArrayList<>(BATCH_SIZE)));
+        int part = 0;
+        for (Invoice invoice : database.values()) {
+            List<byte[]> batch = batches.get(part);
+            batch.add(codec.encode(LogRecord.put(invoice)));
+            if (batch.size() == BATCH_SIZE) {
+                parts.get(part).append(batch);
+                batch.clear();
+            }
+            part = (part + 1) % parts.size();
+        }
+        for (int i = 0; i < parts.size(); i++) {
+            if (!batches.get(i).isEmpty()) {
+                parts.get(i).append(batches.get(i));
+            }
+        }
+    }
+
+    private void deleteObsoleteFiles() throws IOException {
+        List<Path> obsoleteFiles = new ArrayList<>();
+        files(SNAPSHOT_PREFIX).headMap(snapshotGeneration).values().forEach(obsoleteFiles::addAll);
+        files(JOURNAL_PREFIX).headMap(snapshotGeneration - 1).values().forEach(obsoleteFiles::addAll);
+        for (Path file : obsoleteFiles) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private TreeMap<Long, List<Path>> files(String prefix) throws IOException {
+        TreeMap<Long, List<Path>> files = new TreeMap<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, prefix + "*" + FILE_SUFFIX)) {
+            for (Path path : paths) {
+                String name = path.getFileName().toString();
+                try {
+                    files.computeIfAbsent(Long.parseLong(name.substring(prefix.length(), prefix.length() + 20)), id -> new ArrayList<>()).add(path);
+                } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                    log.warn("Ignoring unexpected file {} in snapshot directory.", path);
+                }
+            }
+        }
+        return files;
+    }
+
+    private LogSegment openJournal(long journalId) throws IOException {
+        return LogSegment.open(journalId, directory.resolve(String.format("%s%020d%s", JOURNAL_PREFIX, journalId, FILE_SUFFIX)), codecs, LogFormat.BINARY);
+    }
+
+    private Path snapshotPath(long snapshotId, int part) {
+        return directory.resolve(String.format("%s%020d-%04d%s", SNAPSHOT_PREFIX, snapshotId, part, FILE_SUFFIX));
+    }
+
+    private Path existing(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            throw new IOException(String.format("Snapshot part %s is missing.", path));
+        }
+        return path;
+    }
+
+    private void snapshotInBackground() {
+        try {
+            snapshotIfNeeded();
+        } catch (IOException e) {
+            log.error("An error occurred during snapshotting in-memory database.", e);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package pl.coderstrust.database.memory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class WriteTracker<K, V> {
+
+    public static final long NO_VERSION = -1;
+
+    private static final int STRIPES = 16;
+    private static final int PADDING = 16;
+
+    // Counters of one stripe are kept a cache line apart from the next one, so writers on different threads do not share it.
+    private final AtomicLongArray startedWrites = new AtomicLongArray(STRIPES * PADDING);
+    private final AtomicLongArray completedWrites = new AtomicLongArray(STRIPES * PADDING);
+    // Writes in flight are counted per parity of the epoch they began in, so a snapshot waits only for those which began before it.
+    private final AtomicLongArray activeWrites = new AtomicLongArray(2 * STRIPES * PADDING);
+    private final List<Capture<K, V>> captures = new CopyOnWriteArrayList<>();
+    private final Lock epochLock = new ReentrantLock();
+    private volatile long epoch;
+
+    public long begin() {
+        int stripe = stripe();
+        startedWrites.incrementAndGet(stripe);
+        while (true) {
+            long currentEpoch = epoch;
+            activeWrites.incrementAndGet(activeStripe(currentEpoch, stripe));
+            if (epoch == currentEpoch) {
+                return currentEpoch;
+            }
+            activeWrites.decrementAndGet(activeStripe(currentEpoch, stripe));
+        }
+    }
+
+    public void end(long ticket) {
+        int stripe = stripe();
+        activeWrites.decrementAndGet(activeStripe(ticket, stripe));
+        completedWrites.incrementAndGet(stripe);
+    }
+
+    public void recordPrevious(K key, V previousValue) {
+        // Called by a writer under the lock of its key before the new value is visible, so the first value recorded is the one a snapshot began with.
+        for (Capture<K, V> capture : captures) {
+            capture.previousValues.putIfAbsent(key, Optional.ofNullable(previousValue));
+        }
+    }
+
+    public long version() {
+        long completed = sum(completedWrites, 0);
+        long started = sum(startedWrites, 0);
+        return completed == started ? started : NO_VERSION;
+    }
+
+    public boolean isUnchangedSince(long version) {
+        return version != NO_VERSION && sum(startedWrites, 0) == version;
+    }
+
+    public Versioned<List<V>> snapshot(Map<K, V> source, Function<V, K> keyOf) {
+        if (source == null) {
+            throw new IllegalArgumentException("Source cannot be null.");
+        }
+        if (keyOf == null) {
+            throw new IllegalArgumentException("Key function cannot be null.");
+        }
+        Capture<K, V> capture = new Capture<>();
+        long version;
+        List<V> values;
+        captures.add(capture);
+        try {
+            awaitWritesInFlight();
+            version = version();
+            values = new ArrayList<>(source.values());
+        } finally {
+            captures.remove(capture);
+        }
+        if (capture.previousValues.isEmpty()) {
+            return new Versioned<>(isUnchangedSince(version) ? version : NO_VERSION, Collections.unmodifiableList(values));
+        }
+        // Writers are never held back by the copy, whatever they changed meanwhile is rolled back to the value it replaced.
+        List<V> snapshot = values.stream()
+            .filter(value -> !capture.previousValues.containsKey(keyOf.apply(value)))
+            .collect(Collectors.toCollection(ArrayList::new));
+        capture.previousValues.values().forEach(previousValue -> previousValue.ifPresent(snapshot::add));
+        return new Versioned<>(NO_VERSION, Collections.unmodifiableList(snapshot));
+    }
+
+    private void awaitWritesInFlight() {
+        // Writes which began before the capture may have changed their key without recording it, so they have to complete before the copy.
+        epochLock.lock();
+        try {
+            long previousEpoch = epoch;
+            epoch = previousEpoch + 1;
+            int offset = activeStripe(previousEpoch, 0);
+            while (sum(activeWrites, offset) != 0) {
+                Thread.onSpinWait();
+            }
+        } finally {
+            epochLock.unlock();
+        }
+    }
+
+    private static long sum(AtomicLongArray counters, int offset) {
+        long sum = 0;
+        for (int stripe = 0; stripe < STRIPES * PADDING; stripe += PADDING) {
+            sum += counters.get(offset + stripe);
+        }
+        return sum;
+    }
+
+    private static int stripe() {
+        return (int) (Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+    }
+
+    private static int activeStripe(long epoch, int stripe) {
+        return (int) (epoch & 1) * STRIPES * PADDING + stripe;
+    }
+
+    private static final class Capture<K, V> {
+
+        private final Map<K, Optional<V>> previousValues = new ConcurrentHashMap<>();
+    }
+
+    public static final class Versioned<T> {
+
+        private final long version;
+        private final T value;
+
+        private Versioned(long version, T value) {
+            this.version = version;
+            this.value = value;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public T getValue() {
+            return value;
+        }
+    }
+}
@@ -1,13 +1,28 @@
 package pl.coderstrust.helpers;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.input.ReversedLinesFileReader;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -18,6 +33,8 @@ import org.springframework.stereotype.Component;
 public class FileHelper {
 
     private static final String ENCODING = "UTF-8";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
 
     public void createFile(String filePath) throws IOException {
         if (filePath == null) {
@@ -54,7 +71,10 @@ public class FileHelper {
         if (filePath == null) {
             throw new IllegalArgumentException("Path of the file cannot be null");
         }
-        FileUtils.write(new File(filePath), "", ENCODING);
+        Path path = Paths.get(filePath);
+        Path temp = path.resolveSibling(path.getFileName() + TEMP_FILE_SUFFIX);
+        Files.write(temp, new byte[0]);
+        replace(temp, path);
     }
 
     public void writeLine(String filePath, String line) throws IOException {
@@ -67,6 +87,16 @@ public class FileHelper {
         FileUtils.writeLines(new File(filePath), ENCODING, Collections.singleton(line), true);
     }
 
+    public void writeLines(String filePath, List<String> lines) throws IOException {
+        if (filePath == null) {
+            throw new IllegalArgumentException("Path of the file cannot be null");
+        }
+        if (lines == null || lines.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Lines cannot be null");
+        }
+        FileUtils.writeLines(new File(filePath), ENCODING, lines, true);
+    }
+
     public List<String> readLines(String filePath) throws IOException {
         if (filePath == null) {
             throw new IllegalArgumentException("Path of the file cannot be null");
@@ -74,6 +104,13 @@ public class FileHelper {
         return FileUtils.readLines(new File(filePath), ENCODING);
     }
 
+    public InputStream newInputStream(String filePath) throws IOException {
+        if (filePath == null) {
+            throw new IllegalArgumentException("Path of the file cannot be null");
+        }
+        return new BufferedInputStream(Channels.newInputStream(FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)), BUFFER_SIZE);
+    }
+
     public String readLastLine(String filePath) throws IOException {
         if (filePath == null) {
             throw new IllegalArgumentException("File's path cannot be null.");
@@ -90,10 +127,19 @@ public class FileHelper {
         if (lineNumber < 1) {
             throw new IllegalArgumentException("Line number cannot be lower than one.");
         }
-        File file = new File(filePath);
-        List<String> lines = FileUtils.readLines(file, ENCODING);
-        lines.remove(lineNumber - 1);
-        FileUtils.writeLines(file, ENCODING, lines, false);
+        rewriteLines(filePath, Collections.singletonMap(lineNumber, null));
+    }
+
+    public void removeLines(String filePath, Set<Integer> lineNumbers) throws IOException {
+        if (filePath == null) {
+            throw new IllegalArgumentException("File's path cannot be null.");
+        }
+        if (lineNumbers == null || lineNumbers.stream().anyMatch(lineNumber -> lineNumber == null || lineNumber < 1)) {
+            throw new IllegalArgumentException("Line numbers cannot be null or lower than one.");
+        }
+        Map<Integer, String> removedLines = new HashMap<>();
+        lineNumbers.forEach(lineNumber -> removedLines.put(lineNumber, null));
+        rewriteLines(filePath, removedLines);
     }
 
     public void replaceLine(String filePath, int lineNumber, String line) throws IOException {
@@ -106,9 +152,55 @@ public class FileHelper {
         if (line == null) {
             throw new IllegalArgumentException("Line number cannot be null.");
         }
-        File file = new File(filePath);
-        List<String> lines = FileUtils.readLines(file, ENCODING);
-        lines.set(lineNumber - 1, line);
-        FileUtils.writeLines(file, ENCODING, lines, false);
+        rewriteLines(filePath, Collections.singletonMap(lineNumber, line));
+    }
+
+    public void replaceLines(String filePath, Map<Integer, String> lines) throws IOException {
+        if (filePath == null) {
+            throw new IllegalArgumentException("File's path cannot be null.");
+        }
+        if (lines == null || lines.keySet().stream().anyMatch(lineNumber -> lineNumber == null || lineNumber < 1)) {
+            throw new IllegalArgumentException("Line numbers cannot be null or lower than one.");
+        }
+        if (lines.values().stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Lines cannot be null.");
+        }
+        rewriteLines(filePath, lines);
+    }
+
+    private void rewriteLines(String filePath, Map<Integer, String> replacements) throws IOException {
+        int lastLineNumber = replacements.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+        Path path = Paths.get(filePath);
+        Path temp = path.resolveSibling(path.getFileName() + TEMP_FILE_SUFFIX);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(path.toFile()), ENCODING), BUFFER_SIZE);
+             BufferedWriter writer = Files.newBufferedWriter(temp, Charset.forName(ENCODING))) {
+            int currentLineNumber = 0;
+            String currentLine = reader.readLine();
+            while (currentLine != null) {
+                currentLineNumber++;
+                if (!replacements.containsKey(currentLineNumber)) {
+                    writer.write(currentLine);
+                    writer.write(System.lineSeparator());
+                } else if (replacements.get(currentLineNumber) != null) {
+                    writer.write(replacements.get(currentLineNumber));
+                    writer.write(System.lineSeparator());
+                }
+                currentLine = reader.readLine();
+            }
+            if (currentLineNumber < lastLineNumber) {
+                throw new IndexOutOfBoundsException(String.format("There is no line %s in file %s.", lastLineNumber, filePath));
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        replace(temp, path);
+    }
+
+    private void replace(Path temp, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
     }
 }
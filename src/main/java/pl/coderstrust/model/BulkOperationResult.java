@@ -0,0 +1,51 @@
+package pl.coderstrust.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Builder;
+import lombok.Data;
+
+@JsonDeserialize(builder = BulkOperationResult.BulkOperationResultBuilder.class)
+@ApiModel(value = "Bulk Operation Result", description = "Outcome of one item of a bulk save or delete, in the order of the request")
+@Data
+@Builder(builderClassName = "BulkOperationResultBuilder", toBuilder = true)
+public final class BulkOperationResult {
+
+    @ApiModelProperty(value = "Id of the saved or deleted invoice", example = "1")
+    private final Long id;
+    @ApiModelProperty(value = "Saved invoice, absent for deletions and failed items")
+    private final Invoice invoice;
+    @ApiModelProperty(value = "Whether the item was saved or deleted", example = "true")
+    private final boolean succeeded;
+    @ApiModelProperty(value = "Reason why the item failed", example = "There is no invoice with id: 1")
+    private final String error;
+
+    public static BulkOperationResult saved(Invoice invoice) {
+        return BulkOperationResult.builder()
+            .id(invoice.getId())
+            .invoice(invoice)
+            .succeeded(true)
+            .build();
+    }
+
+    public static BulkOperationResult deleted(Long id) {
+        return BulkOperationResult.builder()
+            .id(id)
+            .succeeded(true)
+            .build();
+    }
+
+    public static BulkOperationResult failed(Long id, String error) {
+        return BulkOperationResult.builder()
+            .id(id)
+            .succeeded(false)
+            .error(error)
+            .build();
+    }
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static class BulkOperationResultBuilder {
+    }
+}
@@ -0,0 +1,25 @@
+package pl.coderstrust.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import java.util.List;
+import lombok.Builder;
+import lombok.Data;
+
+@JsonDeserialize(builder = InvoicePage.InvoicePageBuilder.class)
+@ApiModel(value = "Invoice Page", description = "One page of invoices ordered by id")
+@Data
+@Builder(builderClassName = "InvoicePageBuilder", toBuilder = true)
+public final class InvoicePage {
+
+    @ApiModelProperty(value = "Invoices on the page")
+    private final List<Invoice> invoices;
+    @ApiModelProperty(value = "Cursor of the next page, absent on the last page", example = "MTI")
+    private final String nextCursor;
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static class InvoicePageBuilder {
+    }
+}
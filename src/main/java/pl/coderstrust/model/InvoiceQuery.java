@@ -0,0 +1,40 @@
+package pl.coderstrust.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import lombok.Builder;
+import lombok.Data;
+
+@JsonDeserialize(builder = InvoiceQuery.InvoiceQueryBuilder.class)
+@ApiModel(value = "Invoice Query", description = "Criteria of invoice search, absent criteria match every invoice")
+@Data
+@Builder(builderClassName = "InvoiceQueryBuilder", toBuilder = true)
+public final class InvoiceQuery {
+
+    @ApiModelProperty(value = "Tax id of the buyer", example = "5272850022")
+    private final String buyerTaxId;
+    @ApiModelProperty(value = "Tax id of the seller", example = "5272850022")
+    private final String sellerTaxId;
+    @ApiModelProperty(value = "Lower bound of issued date, inclusive", example = "2019-07-01")
+    private final LocalDate issuedFrom;
+    @ApiModelProperty(value = "Upper bound of issued date, inclusive", example = "2019-09-30")
+    private final LocalDate issuedTo;
+    @ApiModelProperty(value = "Lower bound of due date, inclusive", example = "2019-07-01")
+    private final LocalDate dueFrom;
+    @ApiModelProperty(value = "Upper bound of due date, inclusive", example = "2019-09-30")
+    private final LocalDate dueTo;
+    @ApiModelProperty(value = "Beginning of invoice number", example = "FV/1/")
+    private final String numberPrefix;
+    @ApiModelProperty(value = "Lower bound of total gross value, inclusive", example = "100.00")
+    private final BigDecimal minGross;
+    @ApiModelProperty(value = "Upper bound of total gross value, inclusive", example = "1000.00")
+    private final BigDecimal maxGross;
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static class InvoiceQueryBuilder {
+    }
+}
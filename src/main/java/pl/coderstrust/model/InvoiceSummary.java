@@ -0,0 +1,38 @@
+package pl.coderstrust.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import lombok.Builder;
+import lombok.Data;
+
+@JsonDeserialize(builder = InvoiceSummary.InvoiceSummaryBuilder.class)
+@ApiModel(value = "Invoice Summary", description = "Header of invoice with totals of its entries, without the entries themselves")
+@Data
+@Builder(builderClassName = "InvoiceSummaryBuilder", toBuilder = true)
+public final class InvoiceSummary {
+
+    @ApiModelProperty(value = "The unique identifier of the invoice", example = "1")
+    private final Long id;
+    @ApiModelProperty(value = "Invoice number", example = "FV/1/05/2019")
+    private final String number;
+    @ApiModelProperty(value = "Date of Invoice creation", example = "2019-11-21")
+    private final LocalDate issuedDate;
+    @ApiModelProperty(value = "Term of payment", example = "2019-11-21")
+    private final LocalDate dueDate;
+    @ApiModelProperty(value = "Name of the buyer", example = "Coders Trust")
+    private final String buyerName;
+    @ApiModelProperty(value = "Name of the seller", example = "Coders Trust")
+    private final String sellerName;
+    @ApiModelProperty(value = "Total value before taxation", example = "500.00")
+    private final BigDecimal netValue;
+    @ApiModelProperty(value = "Total value after taxation", example = "615.00")
+    private final BigDecimal grossValue;
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static class InvoiceSummaryBuilder {
+    }
+}
@@ -0,0 +1,31 @@
+package pl.coderstrust.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import java.math.BigDecimal;
+import lombok.Builder;
+import lombok.Data;
+
+@JsonDeserialize(builder = InvoiceTotals.InvoiceTotalsBuilder.class)
+@ApiModel(value = "Invoice Totals", description = "Totals of invoice entries in one report group")
+@Data
+@Builder(builderClassName = "InvoiceTotalsBuilder", toBuilder = true)
+public final class InvoiceTotals {
+
+    @ApiModelProperty(value = "Report group: VAT rate, month or company tax id", example = "VAT_23")
+    private final String group;
+    @ApiModelProperty(value = "Number of invoice entries in the group", example = "12")
+    private final long entries;
+    @ApiModelProperty(value = "Total quantity sold", example = "40")
+    private final long quantity;
+    @ApiModelProperty(value = "Total value before taxation", example = "500.00")
+    private final BigDecimal netValue;
+    @ApiModelProperty(value = "Total value after taxation", example = "615.00")
+    private final BigDecimal grossValue;
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static class InvoiceTotalsBuilder {
+    }
+}
@@ -0,0 +1,11 @@
+package pl.coderstrust.model;
+
+import io.swagger.annotations.ApiModel;
+
+@ApiModel(value = "Report Grouping", description = "Provides the ways invoice entries can be grouped in reports")
+public enum ReportGrouping {
+    VAT_RATE,
+    MONTH,
+    SELLER,
+    BUYER
+}
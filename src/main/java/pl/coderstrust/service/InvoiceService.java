@@ -1,6 +1,12 @@
 package pl.coderstrust.service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,7 +14,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import pl.coderstrust.database.Database;
 import pl.coderstrust.database.DatabaseOperationException;
+import pl.coderstrust.model.BulkOperationResult;
 import pl.coderstrust.model.Invoice;
+import pl.coderstrust.model.InvoicePage;
+import pl.coderstrust.model.InvoiceQuery;
+import pl.coderstrust.model.InvoiceSummary;
+import pl.coderstrust.model.InvoiceTotals;
+import pl.coderstrust.model.ReportGrouping;
 
 @Service
 public class InvoiceService {
@@ -41,6 +53,37 @@ public class InvoiceService {
         }
     }
 
+    public List<BulkOperationResult> addAll(List<Invoice> invoices) throws ServiceOperationException {
+        if (invoices == null) {
+            log.error("Attempt to add null list of invoices to database.");
+            throw new IllegalArgumentException("Invoices cannot be null.");
+        }
+        try {
+            List<Invoice> invoicesToSave = new ArrayList<>(invoices.size());
+            List<BulkOperationResult> rejections = new ArrayList<>(invoices.size());
+            for (Invoice invoice : invoices) {
+                if (invoice != null && invoice.getId() != null && database.exists(invoice.getId())) {
+                    log.error("Attempt to add existing invoice to database.");
+                    rejections.add(BulkOperationResult.failed(invoice.getId(), "Invoice already exist in database."));
+                } else {
+                    invoicesToSave.add(invoice);
+                    rejections.add(null);
+                }
+            }
+            Iterator<BulkOperationResult> savedInvoices = database.saveAll(invoicesToSave).iterator();
+            List<BulkOperationResult> results = new ArrayList<>(invoices.size());
+            for (BulkOperationResult rejection : rejections) {
+                results.add(rejection != null ? rejection : savedInvoices.next());
+            }
+            log.info("Bulk of {} invoices has been added to database.", invoices.size());
+            return results;
+        } catch (DatabaseOperationException e) {
+            String message = "An error occurred during adding invoices.";
+            log.error(message, e);
+            throw new ServiceOperationException(message, e);
+        }
+    }
+
     public Invoice update(Invoice invoice) throws ServiceOperationException {
         if (invoice == null) {
             log.error("Attempt to update null invoice.");
@@ -79,6 +122,22 @@ public class InvoiceService {
         }
     }
 
+    public List<BulkOperationResult> deleteAllById(List<Long> ids) throws ServiceOperationException {
+        if (ids == null) {
+            log.error("Attempt to delete invoices by null list of ids.");
+            throw new IllegalArgumentException("Ids cannot be null.");
+        }
+        try {
+            List<BulkOperationResult> results = database.deleteAllById(ids);
+            log.debug("Bulk of {} invoices has been deleted.", ids.size());
+            return results;
+        } catch (DatabaseOperationException e) {
+            String message = "An error occurred during deleting invoices by ids.";
+            log.error(message, e);
+            throw new ServiceOperationException(message, e);
+        }
+    }
+
     public Optional<Invoice> getById(Long id) throws ServiceOperationException {
         if (id == null) {
             log.error("Attempt to get invoice by null id.");
@@ -109,6 +168,66 @@ public class InvoiceService {
         }
     }
 
+    public Collection<Invoice> getByIssuedDateRange(LocalDate from, LocalDate to) throws ServiceOperationException {
+        if (from == null || to == null) {
+            log.error("Attempt to get invoices by null issued date range.");
+            throw new IllegalArgumentException("Date range bounds cannot be null.");
+        }
+        try {
+            return database.getByIssuedDateRange(from, to);
+        } catch (DatabaseOperationException e) {
+            String message = "An error occurred during getting invoices by issued date range.";
+            log.error(message, e);
+            throw new ServiceOperationException(message, e);
+        }
+    }
+
+    public Collection<Invoice> getByDueDateRange(LocalDate from, LocalDate to) throws ServiceOperationException {
+        if (from == null || to == null) {
+            log.error("Attempt to get invoices by null due date range.");
+            throw new IllegalArgumentException("Date range bounds cannot be null.");
+        }
+        try {
+            return database.getByDueDateRange(from, to);
+        } catch (DatabaseOperationException e) {
+            String message = "An error occurred during getting invoices by due date range.";
+            log.error(message, e);
+            throw new ServiceOperationException(message, e);
+        }
+    }
+
+    public List<Invoice> search(InvoiceQuery query) throws ServiceOperationException {
+        if (query == null) {
+            log.error("Attempt to search invoices by null query.");
+            throw new IllegalArgumentException("Query cannot be null.");
+        }
+        try {
+            return database.search(query);
+        } catch (DatabaseOperationException e) {
+            String message = "An error occurred during searching invoices.";
+            log.error(message, e);
+            throw new ServiceOperationException(message, e);
+        }
+    }
+
+    public List<InvoiceTotals> getTotals(ReportGrouping grouping, LocalDate from, LocalDate to) throws ServiceOperationException {
+        if (grouping == null) {
+            log.error("Attempt to get invoice totals with null grouping.");
+            throw new IllegalArgumentException("Report grouping cannot be null.");
+        }
+        if (from == null || to == null) {
+            log.error("Attempt to get invoice totals by null issued date range.");
+            throw new IllegalArgumentException("Date range bounds cannot be null.");
+        }
+        try {
+            return database.getTotals(grouping, from, to);
+        } catch (DatabaseOperationException e) {
+            String message = "An error occurred during getting invoice totals.";
+            log.error(message, e);
+            throw new ServiceOperationException(message, e);
+        }
+    }
+
     public Collection<Invoice> getAll() throws ServiceOperationException {
         try {
             return database.getAll();
@@ -119,6 +238,54 @@ public class InvoiceService {
         }
     }
 
+    public List<InvoiceSummary> getSummaries() throws ServiceOperationException {
+        try {
+            return database.getSummaries();
+        } catch (DatabaseOperationException e) {
+            String message = "An error occurred during getting invoice summaries.";
+            log.error(message, e);
+            throw new ServiceOperationException(message, e);
+        }
+    }
+
+    public InvoicePage getPage(String cursor, int limit) throws ServiceOperationException {
+        if (limit <= 0) {
+            log.error("Attempt to get page of invoices with non-positive limit.");
+            throw new IllegalArgumentException("Page limit must be greater than zero.");
+        }
+        Long afterId = decodeCursor(cursor);
+        try {
+            // One extra invoice tells whether there is a next page without another round trip.
+            List<Invoice> invoices = database.getPage(afterId, limit == Integer.MAX_VALUE ? limit : limit + 1);
+            boolean hasNextPage = invoices.size() > limit;
+            List<Invoice> page = new ArrayList<>(hasNextPage ? invoices.subList(0, limit) : invoices);
+            return InvoicePage.builder()
+                .invoices(page)
+                .nextCursor(hasNextPage ? encodeCursor(page.get(page.size() - 1).getId()) : null)
+                .build();
+        } catch (DatabaseOperationException e) {
+            String message = "An error occurred during getting page of invoices.";
+            log.error(message, e);
+            throw new ServiceOperationException(message, e);
+        }
+    }
+
+    private static String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static Long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            log.error("Attempt to get page of invoices with invalid cursor.");
+            throw new IllegalArgumentException("Invalid page cursor.", e);
+        }
+    }
+
     public void deleteAll() throws ServiceOperationException {
         try {
             database.deleteAll();